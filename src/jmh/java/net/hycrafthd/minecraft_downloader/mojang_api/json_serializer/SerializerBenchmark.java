@@ -0,0 +1,92 @@
+package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import net.hycrafthd.minecraft_downloader.Constants;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.JavaVersionManifestJson;
+
+/**
+ * Compares the streaming serializers against the tree and reflection based parsing they replaced. The inputs are the
+ * samples in the test resources, which are also used by {@link SerializerCompatibilityTest}. Run with the gc profiler
+ * to see the allocation per parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+
+	private final Gson legacyGson = SerializerCompatibilityTest.LEGACY_GSON;
+
+	private String assetIndex;
+	private String javaVersion;
+	private String client;
+	private String javaVersionManifest;
+
+	@Setup
+	public void setup() {
+		assetIndex = SerializerCompatibilityTest.readResource("asset_index.json");
+		javaVersion = SerializerCompatibilityTest.readResource("java_runtime_index.json");
+		client = SerializerCompatibilityTest.readResource("client.json");
+		javaVersionManifest = SerializerCompatibilityTest.readResource("java_version_manifest.json");
+	}
+
+	@Benchmark
+	public CurrentAssetIndexJson streamingAssetIndex() {
+		return Constants.GSON.fromJson(assetIndex, CurrentAssetIndexJson.class);
+	}
+
+	@Benchmark
+	public CurrentAssetIndexJson legacyAssetIndex() {
+		return legacyGson.fromJson(assetIndex, CurrentAssetIndexJson.class);
+	}
+
+	@Benchmark
+	public CurrentJavaVersionJson streamingJavaVersion() {
+		return Constants.GSON.fromJson(javaVersion, CurrentJavaVersionJson.class);
+	}
+
+	@Benchmark
+	public CurrentJavaVersionJson legacyJavaVersion() {
+		return legacyGson.fromJson(javaVersion, CurrentJavaVersionJson.class);
+	}
+
+	@Benchmark
+	public CurrentClientJson streamingClient() {
+		return Constants.GSON.fromJson(client, CurrentClientJson.class);
+	}
+
+	@Benchmark
+	public CurrentClientJson legacyClient() {
+		return legacyGson.fromJson(client, CurrentClientJson.class);
+	}
+
+	@Benchmark
+	public JavaVersionManifestJson streamingJavaVersionManifest() {
+		return Constants.GSON.fromJson(javaVersionManifest, JavaVersionManifestJson.class);
+	}
+
+	@Benchmark
+	public JavaVersionManifestJson legacyJavaVersionManifest() {
+		return legacyGson.fromJson(javaVersionManifest, JavaVersionManifestJson.class);
+	}
+
+}
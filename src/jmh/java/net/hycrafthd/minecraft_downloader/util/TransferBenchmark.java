@@ -0,0 +1,139 @@
+package net.hycrafthd.minecraft_downloader.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the ways a response body is written to the part file and hashed. The source behaves like the body stream
+ * of the http client, which hands out at most one received 16 KiB buffer per read. The pooled transfer reads into the
+ * array of a pooled heap buffer. The channel transfer is the previous implementation with a channel adapter and a
+ * direct buffer. The stream copy is the original digest stream with a new buffer per file. Run with the gc profiler to
+ * see the allocation per file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+	private static final int RECEIVE_BUFFER_SIZE = 16 * 1024;
+
+	@Param({ "4096", "262144", "8388608" })
+	private int size;
+
+	private byte[] data;
+	private File target;
+	private ByteBuffer directBuffer;
+
+	@Setup
+	public void setup() throws IOException {
+		target = File.createTempFile("transfer", ".target");
+
+		data = new byte[size];
+		new Random(0).nextBytes(data);
+
+		directBuffer = ByteBuffer.allocateDirect(64 * 1024);
+	}
+
+	@TearDown
+	public void tearDown() {
+		target.delete();
+	}
+
+	@Benchmark
+	public byte[] pooledTransfer() throws IOException {
+		final MessageDigest digest = FileUtil.createSha1Digest();
+		try (final InputStream inputStream = new ResponseInputStream(data); //
+				final FileChannel targetChannel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			FileUtil.transfer(inputStream, targetChannel, digest);
+		}
+		return digest.digest();
+	}
+
+	@Benchmark
+	public byte[] directChannelTransfer() throws IOException {
+		final MessageDigest digest = FileUtil.createSha1Digest();
+		try (final ReadableByteChannel sourceChannel = Channels.newChannel(new ResponseInputStream(data)); //
+				final FileChannel targetChannel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final ByteBuffer buffer = directBuffer.clear();
+			while (sourceChannel.read(buffer) >= 0) {
+				buffer.flip();
+				buffer.mark();
+				digest.update(buffer);
+				buffer.reset();
+				while (buffer.hasRemaining()) {
+					targetChannel.write(buffer);
+				}
+				buffer.clear();
+			}
+		}
+		return digest.digest();
+	}
+
+	@Benchmark
+	public byte[] streamCopy() throws IOException {
+		final MessageDigest digest = FileUtil.createSha1Digest();
+		try (final InputStream inputStream = new DigestInputStream(new ResponseInputStream(data), digest); //
+				final OutputStream outputStream = new FileOutputStream(target)) {
+			FileUtil.copy(inputStream, outputStream, new byte[8192]);
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Returns at most one receive buffer per read like the body stream of the http client
+	 */
+	private static class ResponseInputStream extends InputStream {
+
+		private final byte[] data;
+		private int position;
+
+		private ResponseInputStream(byte[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public int read() {
+			return position < data.length ? data[position++] & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) {
+			if (position >= data.length) {
+				return -1;
+			}
+			final int read = Math.min(Math.min(length, RECEIVE_BUFFER_SIZE - position % RECEIVE_BUFFER_SIZE), data.length - position);
+			System.arraycopy(data, position, buffer, offset, read);
+			position += read;
+			return read;
+		}
+	}
+
+}
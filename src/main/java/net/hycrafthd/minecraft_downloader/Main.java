@@ -3,6 +3,7 @@ package net.hycrafthd.minecraft_downloader;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.time.Duration;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -12,13 +13,32 @@ import org.apache.logging.log4j.io.IoBuilder;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
-import net.hycrafthd.minecraft_downloader.mod_loader.ModLoader;
+import net.hycrafthd.minecraft_downloader.MinecraftDownloader.DownloadTasks;
+import net.hycrafthd.minecraft_downloader.download.AimdLimit;
+import net.hycrafthd.minecraft_downloader.download.ArtifactStore;
+import net.hycrafthd.minecraft_downloader.download.BandwidthControl;
+import net.hycrafthd.minecraft_downloader.download.BandwidthLimiter;
+import net.hycrafthd.minecraft_downloader.download.ChunkedDownload;
+import net.hycrafthd.minecraft_downloader.download.DownloadEngine;
+import net.hycrafthd.minecraft_downloader.download.DownloadOrder;
+import net.hycrafthd.minecraft_downloader.download.DownloadPriority;
+import net.hycrafthd.minecraft_downloader.download.FileSync;
+import net.hycrafthd.minecraft_downloader.download.FsyncPolicy;
+import net.hycrafthd.minecraft_downloader.download.Hedging;
+import net.hycrafthd.minecraft_downloader.download.MetadataCache;
+import net.hycrafthd.minecraft_downloader.download.MirrorSelector;
+import net.hycrafthd.minecraft_downloader.download.NativesCache;
+import net.hycrafthd.minecraft_downloader.download.RetryPolicy;
+import net.hycrafthd.minecraft_downloader.download.VerificationJournal;
+import net.hycrafthd.minecraft_downloader.download.VerifyMode;
 import net.hycrafthd.minecraft_downloader.mod_loader.ModLoaderFactory;
 import net.hycrafthd.minecraft_downloader.mod_loader.ModLoaderType;
 import net.hycrafthd.minecraft_downloader.settings.LauncherFeatures;
 import net.hycrafthd.minecraft_downloader.settings.LauncherVariables;
 import net.hycrafthd.minecraft_downloader.settings.ProvidedSettings;
 import net.hycrafthd.minecraft_downloader.util.FileUtil;
+import net.hycrafthd.minecraft_downloader.util.TaskGraph;
+import net.hycrafthd.minecraft_downloader.util.TaskGraph.Task;
 
 public class Main {
 
@@ -31,6 +51,27 @@ public class Main {
 		final OptionSpec<Void> helpSpec = parser.accepts("help", "Show the help menu").forHelp();
 		final OptionSpec<String> versionSpec = parser.accepts("version", "Minecraft version to download").withRequiredArg();
 		final OptionSpec<File> outputSpec = parser.accepts("output", "Output directory for the downloaded files").withRequiredArg().ofType(File.class);
+		final OptionSpec<Integer> maxDownloadsSpec = parser.accepts("max-downloads", "Maximum number of downloads that run at the same time").withRequiredArg().ofType(Integer.class).defaultsTo(DownloadEngine.DEFAULT_MAX_DOWNLOADS);
+		final OptionSpec<Integer> maxHostDownloadsSpec = parser.accepts("max-host-downloads", "Maximum number of downloads that run at the same time from one host").withRequiredArg().ofType(Integer.class).defaultsTo(DownloadEngine.DEFAULT_MAX_DOWNLOADS_PER_HOST);
+		final OptionSpec<Void> fixedConcurrencySpec = parser.accepts("fixed-concurrency", "Keep the maximum number of downloads per host fixed. By default it starts at max-host-downloads and adapts between 1 and max-downloads to the latency and errors of the host");
+		final OptionSpec<String> downloadOrderSpec = parser.accepts("download-order", "Order in which waiting downloads are started. 'priority' starts the client, libraries, natives, asset index and java runtime first and then the assets from the largest to the smallest, 'fifo' starts them in arrival order").withRequiredArg().defaultsTo(DownloadOrder.PRIORITY.getName());
+		final OptionSpec<Integer> maxRetriesSpec = parser.accepts("max-retries", "How often a failed download is retried before it is given up").withRequiredArg().ofType(Integer.class).defaultsTo(RetryPolicy.DEFAULT_MAX_RETRIES);
+		final OptionSpec<Long> retryDelaySpec = parser.accepts("retry-delay", "Milliseconds before the first retry of a failed download. The delay doubles with every retry").withRequiredArg().ofType(Long.class).defaultsTo(RetryPolicy.DEFAULT_BASE_DELAY.toMillis());
+		final OptionSpec<Long> maxBandwidthSpec = parser.accepts("max-bandwidth", "Maximum download bandwidth in kilobytes per second. 0 means no limit").withRequiredArg().ofType(Long.class).defaultsTo(0L);
+		final OptionSpec<String> bandwidthWeightsSpec = parser.accepts("bandwidth-weights", "Share of the maximum bandwidth per download phase, for example 'asset=1,library=4'. Phases are metadata, client, library, native, asset_index, runtime, profiled_asset and asset. Phases without a weight get 1").availableIf(maxBandwidthSpec).withRequiredArg();
+		final OptionSpec<File> bandwidthControlSpec = parser.accepts("bandwidth-control", "Properties file that is checked every second while downloading, so the limit can be changed at runtime. It can contain the keys max-bandwidth and bandwidth-weights with the same values as the options").withRequiredArg().ofType(File.class);
+		final OptionSpec<Long> chunkThresholdSpec = parser.accepts("chunk-threshold", "Files with at least this many megabytes are downloaded in parallel byte ranges").withRequiredArg().ofType(Long.class).defaultsTo(ChunkedDownload.DEFAULT_THRESHOLD / (1024 * 1024));
+		final OptionSpec<Integer> chunksSpec = parser.accepts("chunks", "Number of byte ranges a large file is split into. 1 downloads every file over a single connection").withRequiredArg().ofType(Integer.class).defaultsTo(ChunkedDownload.DEFAULT_CHUNKS);
+		final OptionSpec<Void> noHedgingSpec = parser.accepts("no-hedging", "Do not send a second request for small files whose download is slow");
+		final OptionSpec<Double> hedgePercentileSpec = parser.accepts("hedge-percentile", "Percentile of the recent download durations after which a second request is sent for a small file").availableUnless(noHedgingSpec).withRequiredArg().ofType(Double.class).defaultsTo(Hedging.DEFAULT_PERCENTILE);
+		final OptionSpec<Long> hedgeMinThroughputSpec = parser.accepts("hedge-min-throughput", "Kilobytes per second below which a second request is sent for a small file").availableUnless(noHedgingSpec).withRequiredArg().ofType(Long.class).defaultsTo(Hedging.DEFAULT_MIN_THROUGHPUT / 1024);
+		final OptionSpec<File> mirrorsSpec = parser.accepts("mirrors", "Json file that maps origin hosts to a list of mirror base urls, for example {\"libraries.minecraft.net\": [\"http://mirror.lan/libraries\"]}. The fastest mirror is used and the others and the origin are tried if it fails").withRequiredArg().ofType(File.class);
+		final OptionSpec<File> cacheDirSpec = parser.accepts("cache-dir", "Shared directory where verified files are stored by their hash, so they can be reused by other output directories").withRequiredArg().ofType(File.class);
+		final OptionSpec<String> verifyModeSpec = parser.accepts("verify-mode", "How existing files are verified. 'journal' skips hashing files that did not change since they were last verified, 'size' trusts files with the expected size, 'full' hashes every file again").withRequiredArg().defaultsTo(VerifyMode.JOURNAL.getName());
+		final OptionSpec<Long> metadataTtlSpec = parser.accepts("metadata-ttl", "Seconds a cached metadata json is used without asking the server").withRequiredArg().ofType(Long.class).defaultsTo(MetadataCache.DEFAULT_TTL.toSeconds());
+		final OptionSpec<Long> metadataStaleTtlSpec = parser.accepts("metadata-stale-ttl", "Seconds after the metadata ttl in which a cached metadata json is still used while it is revalidated in the background").withRequiredArg().ofType(Long.class).defaultsTo(MetadataCache.DEFAULT_STALE_TTL.toSeconds());
+		final OptionSpec<Void> offlineSpec = parser.accepts("offline", "Do not use the network. Only files that were already downloaded into the output directory or the cache directory are used");
+		final OptionSpec<String> fsyncSpec = parser.accepts("fsync", "When written files are flushed to the disk. 'none' leaves it to the operating system, 'batch' flushes all files at the end, 'always' flushes every file before it is moved into place").withRequiredArg().defaultsTo(FsyncPolicy.NONE.getName());
 
 		// Launch specs
 		final OptionSpec<Void> launchSpec = parser.accepts("launch", "Launch minecraft after downloading the files");
@@ -63,6 +104,7 @@ public class Main {
 		// Special specs
 		final OptionSpec<Void> skipNativesSpec = parser.accepts("skip-natives", "Skip extracting natives").availableUnless(launchSpec);
 		final OptionSpec<Void> skipAssetsSpec = parser.accepts("skip-assets", "Skip the assets downloader").availableUnless(launchSpec);
+		final OptionSpec<Void> backgroundAssetsSpec = parser.accepts("background-assets", "Launch the game as soon as the client, libraries, natives and asset index are ready and download the remaining asset objects in the background. Legacy asset indexes still need all assets before the launch").availableIf(launchSpec);
 
 		// Information specs
 		final OptionSpec<Void> informationSpec = parser.accepts("extra-information", "Should extra information be extracted");
@@ -86,6 +128,27 @@ public class Main {
 		// Get arguments
 		final String version = set.valueOf(versionSpec);
 		final File output = set.valueOf(outputSpec);
+		final int maxDownloads = set.valueOf(maxDownloadsSpec);
+		final int maxHostDownloads = set.valueOf(maxHostDownloadsSpec);
+		final boolean fixedConcurrency = set.has(fixedConcurrencySpec);
+		final DownloadOrder downloadOrder = DownloadOrder.fromString(set.valueOf(downloadOrderSpec));
+		final int maxRetries = set.valueOf(maxRetriesSpec);
+		final Duration retryDelay = Duration.ofMillis(set.valueOf(retryDelaySpec));
+		final long maxBandwidth = set.valueOf(maxBandwidthSpec) * 1024;
+		final String bandwidthWeights = set.valueOf(bandwidthWeightsSpec);
+		final File bandwidthControl = set.valueOf(bandwidthControlSpec);
+		final long chunkThreshold = set.valueOf(chunkThresholdSpec) * 1024 * 1024;
+		final int chunks = set.valueOf(chunksSpec);
+		final boolean hedging = !set.has(noHedgingSpec);
+		final double hedgePercentile = set.valueOf(hedgePercentileSpec);
+		final long hedgeMinThroughput = set.valueOf(hedgeMinThroughputSpec) * 1024;
+		final File mirrors = set.valueOf(mirrorsSpec);
+		final File cacheDir = set.valueOf(cacheDirSpec);
+		final VerifyMode verifyMode = VerifyMode.fromString(set.valueOf(verifyModeSpec));
+		final Duration metadataTtl = Duration.ofSeconds(set.valueOf(metadataTtlSpec));
+		final Duration metadataStaleTtl = Duration.ofSeconds(set.valueOf(metadataStaleTtlSpec));
+		final boolean offline = set.has(offlineSpec);
+		final FsyncPolicy fsyncPolicy = FsyncPolicy.fromString(set.valueOf(fsyncSpec));
 
 		final boolean launch = set.has(launchSpec);
 		final File run = set.valueOf(runSpec);
@@ -117,31 +180,114 @@ public class Main {
 
 		final boolean skipNatives = set.has(skipNativesSpec);
 		final boolean skipAssets = set.has(skipAssetsSpec);
+		final boolean backgroundAssets = set.has(backgroundAssetsSpec);
 
 		final boolean information = set.has(informationSpec);
 		final File userData = set.valueOf(userDataSpec);
 		final File libraryList = set.valueOf(libraryListSpec);
 		final File libraryListNatives = set.valueOf(libraryListNativesSpec);
 
+		// Configure download engine
+		DownloadEngine.setConcurrencyLimits(maxDownloads, maxHostDownloads);
+		AimdLimit.setEnabled(!fixedConcurrency);
+		DownloadPriority.setOrder(downloadOrder);
+		RetryPolicy.configure(maxRetries, retryDelay);
+		Hedging.configure(hedging, hedgePercentile, hedgeMinThroughput);
+		ChunkedDownload.configure(chunkThreshold, chunks);
+		BandwidthLimiter.setRate(maxBandwidth);
+		if (bandwidthWeights != null) {
+			BandwidthLimiter.setWeights(BandwidthLimiter.parseWeights(bandwidthWeights));
+		}
+		if (bandwidthControl != null) {
+			BandwidthControl.watch(bandwidthControl);
+		}
+		FileSync.setPolicy(fsyncPolicy);
+		DownloadEngine.setOffline(offline);
+		if (offline) {
+			LOGGER.info("Running in offline mode");
+		}
+		if (mirrors != null) {
+			try {
+				MirrorSelector.load(mirrors);
+			} catch (final IOException ex) {
+				throw new IllegalStateException("Cannot load mirror file " + mirrors.getAbsolutePath(), ex);
+			}
+		}
+		if (cacheDir != null) {
+			ArtifactStore.setDirectory(cacheDir);
+			LOGGER.info("Use artifact store in {}", cacheDir.getAbsolutePath());
+		}
+
 		// Create output folder
 		if (FileUtil.createFolders(output)) {
 			LOGGER.debug("Created output folder " + output.getAbsolutePath());
 		}
 
+		// Load already verified files
+		VerificationJournal.load(output, verifyMode);
+
+		// Cache metadata jsons
+		MetadataCache.configure(new File(cacheDir == null ? output : cacheDir, MetadataCache.DIRECTORY_NAME), metadataTtl, metadataStaleTtl);
+
+		// Extract natives once for all versions
+		NativesCache.setDirectory(new File(cacheDir == null ? output : cacheDir, NativesCache.DIRECTORY_NAME));
+
 		// Create provided settings
 		final ProvidedSettings settings = new ProvidedSettings(version, output, run);
 
-		MinecraftParser.launch(settings);
-		MinecraftDownloader.launch(settings, defaultLog, logFile, skipNatives, skipAssets);
+		// The authenticator does not go through the download engine, so it is skipped instead of failing slowly
+		final boolean authenticate = (launch || userData != null) && authFile != null && !offline;
+		if (offline && (launch || userData != null) && authFile != null) {
+			LOGGER.warn("Skipped authentication in offline mode, because logging into minecraft needs the network");
+		}
 
-		if ((launch || userData != null) && authFile != null) {
-			MinecraftAuthenticator.launch(settings, authFile, authMethod, headlessAuth);
+		if (launch && modLoaderType != null) {
+			settings.addFeature(LauncherFeatures.USE_MOD_LOADER);
 		}
 
+		// Provision all files. Every task starts as soon as the tasks it depends on are finished
+		final TaskGraph graph = new TaskGraph();
+
+		final Task parse = graph.add("parse", () -> MinecraftParser.launch(settings));
+
+		// Asset objects are not needed to start the game, so they can be downloaded while it is running
+		final TaskGraph assetGraph = backgroundAssets ? new TaskGraph() : graph;
+		final DownloadTasks downloads = MinecraftDownloader.addTasks(graph, assetGraph, parse, settings, defaultLog, logFile, skipNatives, skipAssets);
+
+		final Task authenticator = authenticate ? graph.add("authenticator", () -> MinecraftAuthenticator.launch(settings, authFile, authMethod, headlessAuth)) : TaskGraph.COMPLETED;
+
 		if (information) {
-			MinecraftInformation.launch(settings, userData, libraryList, libraryListNatives);
+			// Information only needs the asset index, not the asset objects which might still download in the background
+			graph.add("information", () -> MinecraftInformation.launch(settings, userData, libraryList, libraryListNatives), downloads.client(), downloads.libraries(), downloads.natives(), downloads.assetIndex(), downloads.logger(), authenticator);
+		}
+
+		if (launch) {
+			graph.add("java runtime", () -> MinecraftJavaRuntimeSetup.launch(settings, defaultJava, javaExec), parse);
+
+			final Task modLoader = modLoaderType == null ? TaskGraph.COMPLETED : graph.add("mod loader", () -> {
+				LOGGER.info("Setting up mod loader: {}", modLoaderType.getName());
+				MinecraftModLoader.launch(settings, ModLoaderFactory.createModLoader(modLoaderType, version, modLoaderVersion));
+			});
+
+			graph.add("classpath", () -> MinecraftClasspathBuilder.launch(settings, skipClasspathShortening), downloads.client(), downloads.libraries(), modLoader);
+		}
+
+		try {
+			graph.join();
+
+			if (assetGraph != graph && !skipAssets && MinecraftDownloader.isLegacyAssetIndex(settings)) {
+				LOGGER.info("Legacy asset index needs all asset objects before the launch");
+				assetGraph.join();
+			}
+		} finally {
+			VerificationJournal.save();
+			FileSync.flush();
+			Hedging.logStatistics();
+			DownloadEngine.logStatistics();
 		}
 
+		long launchTime = -1;
+
 		if (launch) {
 			if (demo) {
 				settings.addFeature(LauncherFeatures.DEMO_USER);
@@ -158,24 +304,25 @@ public class Main {
 				settings.addVariable(LauncherVariables.RESOLUTION_HEIGHT, height.toString());
 			}
 
-			// Setup Java runtime first
-			MinecraftJavaRuntimeSetup.launch(settings, defaultJava, javaExec);
-
-			// Setup mod loader if specified
-			if (modLoaderType != null) {
-				LOGGER.info("Setting up mod loader: {}", modLoaderType.getName());
-				settings.addFeature(LauncherFeatures.USE_MOD_LOADER);
-
-				// Create mod loader instance
-				ModLoader modLoader = ModLoaderFactory.createModLoader(modLoaderType, version, modLoaderVersion);
+			launchTime = System.currentTimeMillis();
+			MinecraftLauncher.launch(settings, standardJvmArguments);
+		}
 
-				// Setup mod loader
-				MinecraftModLoader.launch(settings, modLoader);
+		if (assetGraph != graph) {
+			LOGGER.info("Wait for the asset objects to finish downloading");
+			try {
+				assetGraph.join();
+			} finally {
+				VerificationJournal.save();
+				FileSync.flush();
+				Hedging.logStatistics();
+				DownloadEngine.logStatistics();
 			}
+		}
 
-			// Build classpath and launch
-			MinecraftClasspathBuilder.launch(settings, skipClasspathShortening);
-			MinecraftLauncher.launch(settings, standardJvmArguments);
+		// The background asset downloads read objects too, so the access times are scanned after they finished
+		if (launchTime >= 0) {
+			MinecraftDownloader.recordAssetAccess(settings, launchTime);
 		}
 	}
 }
@@ -2,7 +2,6 @@ package net.hycrafthd.minecraft_downloader;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.NoSuchElementException;
@@ -111,8 +110,8 @@ public class MinecraftAuthenticator {
 	
 	private static void saveAuthFile(File authFile, AuthenticationFile resultFile, AuthenticationMethodCreator creator) throws IOException {
 		final byte[] bytes = SimpleAuthenticationFileUtil.write(new AuthenticationData(resultFile, creator));
-		try (final FileOutputStream outputStream = new FileOutputStream(authFile)) {
-			outputStream.write(bytes);
+		try {
+			FileUtil.writeFile(authFile, outputStream -> outputStream.write(bytes));
 		} catch (final IOException ex) {
 			Main.LOGGER.error("Cannot write authentication result file to {}", authFile.getAbsolutePath());
 			throw ex;
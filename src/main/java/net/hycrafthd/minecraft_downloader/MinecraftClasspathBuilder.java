@@ -1,7 +1,6 @@
 package net.hycrafthd.minecraft_downloader;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
@@ -24,6 +23,7 @@ import net.hycrafthd.minecraft_downloader.library.DownloadableFile;
 import net.hycrafthd.minecraft_downloader.mod_loader.ModLoaderType;
 import net.hycrafthd.minecraft_downloader.settings.GeneratedSettings;
 import net.hycrafthd.minecraft_downloader.settings.ProvidedSettings;
+import net.hycrafthd.minecraft_downloader.util.FileUtil;
 
 public class MinecraftClasspathBuilder {
 
@@ -136,8 +136,12 @@ public class MinecraftClasspathBuilder {
 		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
 		manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classpath.stream().map(File::toURI).map(URI::toString).collect(Collectors.joining(" ")));
 
-		try (final JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(settings.getClientClasspathJarFile()), manifest)) {
-			outputStream.putNextEntry(new ZipEntry("META-INF/"));
+		try {
+			FileUtil.writeFile(settings.getClientClasspathJarFile(), fileOutputStream -> {
+				try (final JarOutputStream outputStream = new JarOutputStream(fileOutputStream, manifest)) {
+					outputStream.putNextEntry(new ZipEntry("META-INF/"));
+				}
+			});
 		} catch (final IOException ex) {
 			throw new IllegalStateException("Cannot create short class path jar", ex);
 		}
@@ -1,18 +1,27 @@
 package net.hycrafthd.minecraft_downloader;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import net.hycrafthd.minecraft_downloader.download.AssetAccessProfile;
+import net.hycrafthd.minecraft_downloader.download.DownloadPriority;
+import net.hycrafthd.minecraft_downloader.download.DownloadPriority.Level;
+import net.hycrafthd.minecraft_downloader.download.DownloadScheduler;
+import net.hycrafthd.minecraft_downloader.download.NativesCache;
+import net.hycrafthd.minecraft_downloader.download.SingleFlight;
 import net.hycrafthd.minecraft_downloader.legacy.IconAssetFix;
 import net.hycrafthd.minecraft_downloader.library.DownloadableFile;
+import net.hycrafthd.minecraft_downloader.mojang_api.CompactAssetIndex;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson.AssetJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.AssetIndexJson;
@@ -24,27 +33,48 @@ import net.hycrafthd.minecraft_downloader.settings.GeneratedSettings;
 import net.hycrafthd.minecraft_downloader.settings.ProvidedSettings;
 import net.hycrafthd.minecraft_downloader.util.FileUtil;
 import net.hycrafthd.minecraft_downloader.util.StringUtil;
+import net.hycrafthd.minecraft_downloader.util.TaskGraph;
+import net.hycrafthd.minecraft_downloader.util.TaskGraph.Task;
 
 public class MinecraftDownloader {
 	
 	public static void launch(ProvidedSettings settings, boolean defaultLog, File logFile, boolean skipNatives, boolean skipAssets) {
 		Main.LOGGER.info("Start downloading library and asset files");
 		
-		downloadClient(settings);
-		downloadLibraries(settings);
-		if (!skipNatives) {
-			extractNatives(settings);
-		} else {
+		final TaskGraph graph = new TaskGraph();
+		addTasks(graph, graph, TaskGraph.COMPLETED, settings, defaultLog, logFile, skipNatives, skipAssets);
+		graph.join();
+		
+		Main.LOGGER.info("Finished downloading library and asset files");
+	}
+	
+	/**
+	 * Add the download tasks to the graph. The asset objects are added to their own graph, so they can be joined later.
+	 *
+	 * @param graph Graph the tasks are added to
+	 * @param assetGraph Graph the asset objects are added to. Can be the same graph.
+	 * @param parse Task that parses the client json
+	 * @return The added tasks
+	 */
+	public static DownloadTasks addTasks(TaskGraph graph, TaskGraph assetGraph, Task parse, ProvidedSettings settings, boolean defaultLog, File logFile, boolean skipNatives, boolean skipAssets) {
+		final Task client = graph.add("client", () -> downloadClient(settings), parse);
+		final Task libraries = graph.add("libraries", () -> downloadLibraries(settings), parse);
+		final Task natives = skipNatives ? TaskGraph.COMPLETED : graph.add("natives", () -> extractNatives(settings), libraries);
+		
+		final Task assetIndex = skipAssets ? TaskGraph.COMPLETED : graph.add("asset index", () -> downloadAssetIndex(settings), parse);
+		if (!skipAssets) {
+			assetGraph.add("asset objects", () -> downloadAssetObjects(settings), assetIndex);
+		}
+		final Task logger = skipAssets ? TaskGraph.COMPLETED : graph.add("logger", () -> chooseLogger(settings, defaultLog, logFile), parse);
+		
+		if (skipNatives) {
 			Main.LOGGER.info("Skipped extracting natives");
 		}
-		if (!skipAssets) {
-			downloadAssets(settings);
-			chooseLogger(settings, defaultLog, logFile);
-		} else {
+		if (skipAssets) {
 			Main.LOGGER.info("Skipped assets and logger");
 		}
 		
-		Main.LOGGER.info("Finished downloading library and asset files");
+		return new DownloadTasks(client, libraries, natives, assetIndex, logger);
 	}
 	
 	private static void downloadClient(ProvidedSettings settings) {
@@ -55,12 +85,14 @@ public class MinecraftDownloader {
 		final ClientJson clientJar = downloads.getClient();
 		final ClientJson clientMappings = downloads.getClientMappings();
 		
-		FileUtil.downloadFileException(clientJar.getUrl(), settings.getClientJarFile(), clientJar.getSize(), clientJar.getSha1(), "Failed to download client jar");
-		if (clientMappings != null) {
-			FileUtil.downloadFileException(clientMappings.getUrl(), settings.getClientMappingsFile(), clientMappings.getSize(), clientMappings.getSha1(), "Failed to download client mappings");
-		} else {
-			Main.LOGGER.info("Skip client mappings as they are not avaiable for this minecraft version");
-		}
+		DownloadPriority.run(DownloadPriority.of(Level.CLIENT), () -> {
+			FileUtil.downloadFileException(clientJar.getUrl(), settings.getClientJarFile(), clientJar.getSize(), clientJar.getSha1(), "Failed to download client jar");
+			if (clientMappings != null) {
+				FileUtil.downloadFileException(clientMappings.getUrl(), settings.getClientMappingsFile(), clientMappings.getSize(), clientMappings.getSha1(), "Failed to download client mappings");
+			} else {
+				Main.LOGGER.info("Skip client mappings as they are not avaiable for this minecraft version");
+			}
+		});
 	}
 	
 	private static void downloadLibraries(ProvidedSettings settings) {
@@ -68,15 +100,12 @@ public class MinecraftDownloader {
 		
 		final File libraries = settings.getLibrariesDirectory();
 		
-		settings.getGeneratedSettings() //
-				.getDownloadableFiles() //
-				.parallelStream() //
-				.forEach(downloadableFile -> {
-					final File file = new File(libraries, downloadableFile.getPath());
-					
-					FileUtil.downloadFileException(downloadableFile.getUrl(), file, downloadableFile.getSize(), downloadableFile.getSha1(), "Failed to download library");
-					downloadableFile.setDownloadedFile(file);
-				});
+		DownloadScheduler.forEach(settings.getGeneratedSettings().getDownloadableFiles(), downloadableFile -> DownloadPriority.of(downloadableFile.isNative() ? Level.NATIVE : Level.LIBRARY), downloadableFile -> {
+			final File file = new File(libraries, downloadableFile.getPath());
+			
+			FileUtil.downloadFileException(downloadableFile.getUrl(), file, downloadableFile.getSize(), downloadableFile.getSha1(), "Failed to download library");
+			downloadableFile.setDownloadedFile(file);
+		});
 	}
 	
 	private static void extractNatives(ProvidedSettings settings) {
@@ -84,74 +113,123 @@ public class MinecraftDownloader {
 		
 		final File natives = settings.getNativesDirectory();
 		
-		settings.getGeneratedSettings() //
+		final AtomicInteger linked = new AtomicInteger();
+		final AtomicInteger skipped = new AtomicInteger();
+		
+		final List<DownloadableFile> nativeFiles = settings.getGeneratedSettings() //
 				.getDownloadableFiles() //
 				.stream() //
 				.filter(DownloadableFile::isNative) //
 				.filter(DownloadableFile::hasDownloadedFile) //
-				.forEach(downloadableFile -> {
-					final File downloadedFile = downloadableFile.getDownloadedFile();
-					
-					try (final JarFile jarFile = new JarFile(downloadedFile); //
-							final Stream<JarEntry> entryStream = jarFile.stream()) {
-						
-						Main.LOGGER.debug("Try to extract files from {}", downloadedFile);
-						
-						final byte buffer[] = new byte[8192];
-						
-						entryStream //
-								.filter(jarEntry -> !jarEntry.isDirectory()) //
-								.filter(jarEntry -> {
-									for (final String exclusion : downloadableFile.getExtractExclusion()) {
-										if (jarEntry.getName().startsWith(exclusion)) {
-											return false;
-										}
-									}
-									return true;
-								}).forEach(jarEntry -> {
-									final File file = new File(natives, jarEntry.getName());
-									
-									FileUtil.createParentFolders(file);
-									
-									Main.LOGGER.debug("Extract entry {} of file {} to {}", jarEntry.getName(), downloadedFile, file);
-									
-									try (final InputStream inputStream = jarFile.getInputStream(jarEntry); //
-											final OutputStream outputStream = new FileOutputStream(file)) {
-										FileUtil.copy(inputStream, outputStream, buffer);
-									} catch (final IOException ex) {
-										throw new IllegalStateException("Could not extract jar entry " + jarEntry.getName(), ex);
-									}
-									
-									file.setLastModified(jarEntry.getLastModifiedTime().toMillis());
-								});
-								
-						Main.LOGGER.debug("Extracted files from {}", downloadedFile);
-					} catch (final IOException ex) {
-						throw new IllegalStateException("Could not extract native library of file " + downloadedFile, ex);
+				.toList();
+		
+		DownloadScheduler.forEach(nativeFiles, downloadableFile -> {
+			final File downloadedFile = downloadableFile.getDownloadedFile();
+			
+			final Path extracted;
+			final List<Path> files;
+			final Map<String, Long> crcs;
+			
+			try {
+				extracted = NativesCache.extract(downloadedFile, downloadableFile.getSha1(), downloadableFile.getExtractExclusion()).toPath();
+				try (final Stream<Path> paths = Files.walk(extracted)) {
+					files = paths.filter(Files::isRegularFile).toList();
+				}
+				// Copies of the cached files are checked against the CRC of their jar entry
+				try (final JarFile jarFile = new JarFile(downloadedFile)) {
+					crcs = jarFile.stream().filter(jarEntry -> !jarEntry.isDirectory()).collect(Collectors.toMap(JarEntry::getName, JarEntry::getCrc, (first, second) -> first));
+				}
+			} catch (final IOException ex) {
+				throw new IllegalStateException("Could not extract native library of file " + downloadedFile, ex);
+			}
+			
+			// Link the extracted files from the cache into the natives directory of this version
+			DownloadScheduler.forEach(files, cachedPath -> {
+				final File cachedFile = cachedPath.toFile();
+				final String name = extracted.relativize(cachedPath).toString();
+				final File file = new File(natives, name);
+				
+				try {
+					if (isLinked(cachedFile, file, crcs.getOrDefault(name.replace(File.separatorChar, '/'), -1L))) {
+						skipped.incrementAndGet();
+						return;
 					}
-				});
+					
+					Main.LOGGER.debug("Link native file {} to {}", cachedFile, file);
+					
+					// Different native jars might contain the same file
+					SingleFlight.run(file, () -> FileUtil.linkFile(cachedFile, file));
+					linked.incrementAndGet();
+				} catch (final IOException ex) {
+					throw new IllegalStateException("Could not link native file " + cachedFile + " to " + file, ex);
+				}
+			});
+		});
+		
+		Main.LOGGER.info("Linked {} native files and skipped {} unchanged native files", linked.get(), skipped.get());
 	}
 	
-	private static void downloadAssets(ProvidedSettings settings) {
-		Main.LOGGER.info("Download assets");
+	/**
+	 * @param crc CRC32 of the jar entry or -1 if unknown
+	 */
+	private static boolean isLinked(File cachedFile, File file, long crc) throws IOException {
+		if (!FileUtil.checkFile(file)) {
+			return false;
+		}
 		
-		final File assets = settings.getAssetsDirectory();
+		if (Files.isSameFile(cachedFile.toPath(), file.toPath())) {
+			return true;
+		}
+		
+		// Copied because hard links are not supported, so the content must be checked as well
+		if (file.length() != cachedFile.length() || file.lastModified() != cachedFile.lastModified() || crc < 0) {
+			return false;
+		}
+		
+		return FileUtil.checkFileCrc32(file, crc);
+	}
+	
+	private static void downloadAssetIndex(ProvidedSettings settings) {
+		Main.LOGGER.info("Download asset index");
 		
 		final AssetIndexJson assetIndex = settings.getGeneratedSettings().getClientJson().getAssetIndex();
 		
 		final CurrentAssetIndexJson index;
 		
 		try {
-			final File indexFile = new File(assets, "indexes" + Constants.FILE_SEPERATOR + assetIndex.getId() + ".json");
-			
-			FileUtil.downloadFile(assetIndex.getUrl(), indexFile, assetIndex.getSize(), assetIndex.getSha1());
+			final File indexFile = new File(settings.getAssetsDirectory(), "indexes" + Constants.FILE_SEPERATOR + assetIndex.getId() + ".json");
 			
-			index = Constants.GSON.fromJson(FileUtil.readText(indexFile), CurrentAssetIndexJson.class);
+			index = DownloadPriority.call(DownloadPriority.of(Level.ASSET_INDEX), () -> FileUtil.downloadJson(assetIndex.getUrl(), indexFile, assetIndex.getSize(), assetIndex.getSha1(), CurrentAssetIndexJson.class));
 		} catch (final IOException ex) {
 			throw new IllegalStateException("Could not download / parse asset index", ex);
 		}
 		
-		index.getAssets().values().parallelStream().forEach(assetObject -> {
+		settings.getGeneratedSettings().setAssetIndex(index);
+	}
+	
+	/**
+	 * Legacy asset indexes need all asset objects to be copied to their names before the game can start
+	 */
+	public static boolean isLegacyAssetIndex(ProvidedSettings settings) {
+		final CurrentAssetIndexJson index = settings.getGeneratedSettings().getAssetIndex();
+		return index.isMapToResources() || index.isVirtual();
+	}
+	
+	private static void downloadAssetObjects(ProvidedSettings settings) {
+		Main.LOGGER.info("Download asset objects");
+		
+		final File assets = settings.getAssetsDirectory();
+		
+		final AssetIndexJson assetIndex = settings.getGeneratedSettings().getClientJson().getAssetIndex();
+		final CurrentAssetIndexJson index = settings.getGeneratedSettings().getAssetIndex();
+		
+		// Objects that were read by earlier game runs are downloaded first, the others from the largest to the smallest
+		final Map<String, Integer> profileRanks = AssetAccessProfile.ranks(AssetAccessProfile.load(assets, assetIndex.getId()));
+		
+		DownloadScheduler.forEach(index.getObjects(), assetObject -> {
+			final Integer rank = profileRanks.get(assetObject.getHash());
+			return rank != null ? new DownloadPriority(Level.PROFILED_ASSET, rank) : DownloadPriority.largestFirst(Level.ASSET, assetObject.getSize());
+		}, assetObject -> {
 			final String first2HashLetters = StringUtil.first2Letters(assetObject.getHash());
 			
 			final String url = Constants.RESOURCES + Constants.URL_SEPERATOR + first2HashLetters + Constants.URL_SEPERATOR + assetObject.getHash();
@@ -160,7 +238,9 @@ public class MinecraftDownloader {
 			FileUtil.downloadFileException(url, file, assetObject.getSize(), assetObject.getHash(), "Failed to download asset");
 		});
 		
-		if (index.isMapToResources() || index.isVirtual()) {
+		Main.LOGGER.info("Finished downloading asset objects");
+		
+		if (isLegacyAssetIndex(settings)) {
 			Main.LOGGER.info("Legacy assets found. Reconstruct assets");
 			
 			final File resources = new File(settings.getRunDirectory(), "resources");
@@ -176,18 +256,18 @@ public class MinecraftDownloader {
 			
 			FileUtil.createFolders(unhashedFolder);
 			
-			index.getAssets().entrySet().parallelStream().forEach(entry -> {
-				final String name = entry.getKey();
-				final AssetJson assetObject = entry.getValue();
+			final CompactAssetIndex compactIndex = index.getIndex();
+			
+			DownloadScheduler.forEachIndex(compactIndex.getEntryCount(), entry -> {
+				final String hash = compactIndex.getHash(compactIndex.getObject(entry));
 				
-				final String first2HashLetters = StringUtil.first2Letters(assetObject.getHash());
+				final String first2HashLetters = StringUtil.first2Letters(hash);
 				
-				final File hashedFile = new File(assets, "objects" + Constants.FILE_SEPERATOR + first2HashLetters + Constants.FILE_SEPERATOR + assetObject.getHash());
-				final File unhashedFile = new File(unhashedFolder, name);
-				FileUtil.createParentFolders(unhashedFile);
+				final File hashedFile = new File(assets, "objects" + Constants.FILE_SEPERATOR + first2HashLetters + Constants.FILE_SEPERATOR + hash);
+				final File unhashedFile = new File(unhashedFolder, compactIndex.getName(entry));
 				
 				try {
-					Files.copy(hashedFile.toPath(), unhashedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					FileUtil.copyFile(hashedFile, unhashedFile);
 				} catch (final IOException ex) {
 					throw new IllegalStateException("Could not copy file " + hashedFile + " to virtual assets index " + unhashedFile, ex);
 				}
@@ -201,6 +281,13 @@ public class MinecraftDownloader {
 		}
 	}
 	
+	public static void recordAssetAccess(ProvidedSettings settings, long since) {
+		final String indexId = settings.getGeneratedSettings().getClientJson().getAssetIndex().getId();
+		final List<String> hashes = settings.getGeneratedSettings().getAssetIndex().getObjects().stream().map(AssetJson::getHash).toList();
+		
+		AssetAccessProfile.record(settings.getAssetsDirectory(), indexId, hashes, since);
+	}
+	
 	private static void chooseLogger(ProvidedSettings settings, boolean defaultLog, File logFile) {
 		final GeneratedSettings generatedSettings = settings.getGeneratedSettings();
 		final LoggingJson logging = generatedSettings.getClientJson().getLogging();
@@ -238,13 +325,16 @@ public class MinecraftDownloader {
 		
 		final File logFile = new File(settings.getOutputDirectory(), Constants.SHIPPED_LOG4J_CONFIG);
 		
-		try (final InputStream inputStream = MinecraftDownloader.class.getResourceAsStream(Constants.URL_SEPERATOR + Constants.SHIPPED_LOG4J_CONFIG); //
-				final OutputStream outputStream = new FileOutputStream(logFile)) {
-			FileUtil.copy(inputStream, outputStream, new byte[2048]);
+		try (final InputStream inputStream = MinecraftDownloader.class.getResourceAsStream(Constants.URL_SEPERATOR + Constants.SHIPPED_LOG4J_CONFIG)) {
+			FileUtil.writeFile(logFile, outputStream -> FileUtil.copy(inputStream, outputStream, new byte[2048]));
 		} catch (final IOException ex) {
 			throw new IllegalStateException("Could not extract shipped log4j file", ex);
 		}
 		
 		settings.getGeneratedSettings().setLogFile(logFile);
 	}
+	
+	public record DownloadTasks(Task client, Task libraries, Task natives, Task assetIndex, Task logger) {
+	}
+	
 }
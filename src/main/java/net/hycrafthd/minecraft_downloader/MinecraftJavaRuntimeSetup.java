@@ -1,12 +1,25 @@
 package net.hycrafthd.minecraft_downloader;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.security.DigestInputStream;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 
+import org.tukaani.xz.BasicArrayCache;
 import org.tukaani.xz.LZMAInputStream;
 
+import net.hycrafthd.minecraft_downloader.download.ArtifactStore;
+import net.hycrafthd.minecraft_downloader.download.DownloadPriority;
+import net.hycrafthd.minecraft_downloader.download.DownloadPriority.Level;
+import net.hycrafthd.minecraft_downloader.download.DownloadScheduler;
+import net.hycrafthd.minecraft_downloader.download.InvalidContentException;
+import net.hycrafthd.minecraft_downloader.download.RetryPolicy;
+import net.hycrafthd.minecraft_downloader.download.SingleFlight;
+import net.hycrafthd.minecraft_downloader.download.VerificationJournal;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.JavaVersionJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson.FileJson;
@@ -25,6 +38,8 @@ import net.hycrafthd.minecraft_downloader.util.OSUtil.OS;
 
 public class MinecraftJavaRuntimeSetup {
 	
+	private static final String LZMA_FILE_EXTENSION = ".lzma";
+	
 	public static void launch(ProvidedSettings settings, boolean defaultJava, File javaExec) {
 		if (defaultJava) {
 			downloadJavaRuntime(settings);
@@ -48,9 +63,7 @@ public class MinecraftJavaRuntimeSetup {
 		try {
 			final File indexFile = new File(specificRuntimeDirectory, "index.json");
 			
-			FileUtil.downloadFile(javaRuntimeVersionManifest.getUrl(), indexFile, javaRuntimeVersionManifest.getSize(), javaRuntimeVersionManifest.getSha1());
-			
-			index = Constants.GSON.fromJson(FileUtil.readText(indexFile), CurrentJavaVersionJson.class);
+			index = DownloadPriority.call(DownloadPriority.of(Level.RUNTIME), () -> FileUtil.downloadJson(javaRuntimeVersionManifest.getUrl(), indexFile, javaRuntimeVersionManifest.getSize(), javaRuntimeVersionManifest.getSha1(), CurrentJavaVersionJson.class));
 		} catch (final IOException ex) {
 			throw new IllegalStateException("Could not download / parse java runtime index", ex);
 		}
@@ -58,7 +71,7 @@ public class MinecraftJavaRuntimeSetup {
 		final File jreDownloadDirectory = new File(specificRuntimeDirectory, "download");
 		FileUtil.createFolders(jreDownloadDirectory);
 		
-		index.getFiles().entrySet().parallelStream().forEach(entry -> {
+		DownloadScheduler.forEach(index.getFiles().entrySet(), entry -> DownloadPriority.largestFirst(Level.RUNTIME, getDownloadSize(entry.getValue())), entry -> {
 			final String name = entry.getKey();
 			final FileJson fileObject = entry.getValue();
 			
@@ -77,21 +90,7 @@ public class MinecraftJavaRuntimeSetup {
 					FileUtil.downloadFileException(raw.getUrl(), file, raw.getSize(), raw.getSha1(), "Failed to download raw jre file");
 				} else {
 					try {
-						if (FileUtil.checkFile(file) && FileUtil.checkFileSize(file, raw.getSize()) && FileUtil.checkFileSha1(file, raw.getSha1())) {
-							Main.LOGGER.debug("File {} already downloaded and verified", file);
-						} else {
-							final MessageDigest digest = FileUtil.createSha1Digest();
-							
-							FileUtil.downloadFile(lzma.getUrl(), file, lzma.getSize(), lzma.getSha1(), inputStream -> new DigestInputStream(new LZMAInputStream(inputStream), digest));
-							
-							if (!FileUtil.bytesToHex(digest.digest()).equals(raw.getSha1())) {
-								throw new IllegalStateException("SHA1 signature does not match the expected one");
-							}
-							
-							if (fileObject.isExecutable()) {
-								file.setExecutable(true);
-							}
-						}
+						SingleFlight.run(file, () -> installLzmaFile(file, fileObject.isExecutable(), lzma, raw));
 					} catch (final IOException ex) {
 						throw new FileDownloadFailedException("Failed to download lzma jre file", lzma.getUrl(), file, ex);
 					}
@@ -104,6 +103,66 @@ public class MinecraftJavaRuntimeSetup {
 		Main.LOGGER.info("Finished downloading java runtime");
 	}
 	
+	private static long getDownloadSize(FileJson fileObject) {
+		final DownloadsJson downloadsJson = fileObject.getDownloads();
+		if (downloadsJson == null) {
+			return 0;
+		}
+		final DownloadJson download = downloadsJson.getLzma() != null ? downloadsJson.getLzma() : downloadsJson.getRaw();
+		return download == null ? 0 : download.getSize();
+	}
+	
+	private static void installLzmaFile(File file, boolean executable, DownloadJson lzma, DownloadJson raw) throws IOException {
+		if (FileUtil.checkFileVerified(file, raw.getSize(), raw.getSha1())) {
+			Main.LOGGER.debug("File {} already downloaded and verified", file);
+		} else if (ArtifactStore.isEnabled() && ArtifactStore.restore(raw.getSha1(), raw.getSize(), file, executable)) {
+			VerificationJournal.record(file, raw.getSha1());
+		} else {
+			// A decoded file that does not match is downloaded again
+			RetryPolicy.run(lzma.getUrl(), () -> {
+				downloadLzmaFile(file, lzma, raw);
+				return null;
+			});
+			
+			FileUtil.moveFile(FileUtil.getPartFile(file), file);
+			VerificationJournal.record(file, raw.getSha1());
+			ArtifactStore.store(raw.getSha1(), file, executable);
+			
+			if (executable) {
+				file.setExecutable(true);
+			}
+		}
+	}
+	
+	private static void downloadLzmaFile(File file, DownloadJson lzma, DownloadJson raw) throws IOException {
+		// Download the compressed file first, so an interrupted download can be resumed
+		final File lzmaFile = new File(file.getParentFile(), file.getName() + LZMA_FILE_EXTENSION);
+		try {
+			FileUtil.downloadFile(lzma.getUrl(), lzmaFile, lzma.getSize(), lzma.getSha1(), false);
+		} catch (final IOException ex) {
+			// The download was already retried
+			throw new IOException("Could not download compressed file " + lzmaFile, ex);
+		}
+		
+		final MessageDigest digest = FileUtil.createSha1Digest();
+		final File partFile = FileUtil.getPartFile(file);
+		
+		// The decoder buffers are reused between files and the output goes through a pooled buffer that is hashed in the same pass
+		try (final InputStream inputStream = new LZMAInputStream(new BufferedInputStream(new FileInputStream(lzmaFile)), BasicArrayCache.getInstance()); //
+				final FileChannel fileChannel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			FileUtil.transfer(inputStream, fileChannel, digest);
+		}
+		
+		// The compressed file is only needed until it is decoded
+		lzmaFile.delete();
+		VerificationJournal.remove(lzmaFile);
+		
+		if (!FileUtil.digestMatches(digest, FileUtil.hexToBytes(raw.getSha1()))) {
+			partFile.delete();
+			throw new InvalidContentException("SHA1 signature of decoded file " + file + " does not match the expected one");
+		}
+	}
+	
 	private static JavaRuntimeJson extractVersionOfManifest(ProvidedSettings settings) {
 		Main.LOGGER.info("Download and parse java runtime manifest");
 		
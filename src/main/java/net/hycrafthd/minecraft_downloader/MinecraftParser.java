@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import net.hycrafthd.minecraft_downloader.download.DownloadEngine;
+import net.hycrafthd.minecraft_downloader.download.MetadataCache;
 import net.hycrafthd.minecraft_downloader.library.DownloadableFile;
 import net.hycrafthd.minecraft_downloader.library.LibraryParser;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson;
@@ -20,7 +22,11 @@ public class MinecraftParser {
 	public static void launch(ProvidedSettings settings) {
 		Main.LOGGER.info("Start parsing json files");
 		
-		parseClientJson(extractVersionOfManifest(settings.getVersion()), settings);
+		if (DownloadEngine.isOffline()) {
+			parseLocalClientJson(settings);
+		} else {
+			parseClientJson(extractVersionOfManifest(settings.getVersion()), settings);
+		}
 		parseLibraries(settings);
 		
 		Main.LOGGER.info("Finished parsing json files");
@@ -29,16 +35,13 @@ public class MinecraftParser {
 	private static VersionJson extractVersionOfManifest(String version) {
 		Main.LOGGER.info("Download and parse version manifest");
 		
-		final VersionManifestJson manifest;
+		Optional<VersionJson> foundVersionOptional = findVersionInManifest(version, false);
 		
-		try {
-			manifest = Constants.GSON.fromJson(FileUtil.downloadText(Constants.VERSION_MANIFEST), VersionManifestJson.class);
-		} catch (final IOException ex) {
-			throw new IllegalStateException("Could not download / parse version manifest json", ex);
+		if (!foundVersionOptional.isPresent()) {
+			// The cached manifest might be older than the requested version
+			foundVersionOptional = findVersionInManifest(version, true);
 		}
 		
-		final Optional<VersionJson> foundVersionOptional = manifest.getVersions().stream().filter(manifestVersion -> manifestVersion.getId().equals(version)).findAny();
-		
 		if (!foundVersionOptional.isPresent()) {
 			throw new IllegalArgumentException("The requested version " + version + " was not found in the version manifest json");
 		}
@@ -46,6 +49,18 @@ public class MinecraftParser {
 		return foundVersionOptional.get();
 	}
 	
+	private static Optional<VersionJson> findVersionInManifest(String version, boolean forceRevalidate) {
+		final VersionManifestJson manifest;
+		
+		try {
+			manifest = Constants.GSON.fromJson(MetadataCache.get(Constants.VERSION_MANIFEST, forceRevalidate), VersionManifestJson.class);
+		} catch (final IOException ex) {
+			throw new IllegalStateException("Could not download / parse version manifest json", ex);
+		}
+		
+		return manifest.getVersions().stream().filter(manifestVersion -> manifestVersion.getId().equals(version)).findAny();
+	}
+	
 	private static void parseClientJson(VersionJson foundVersion, ProvidedSettings settings) {
 		Main.LOGGER.info("Download and parse client json");
 		
@@ -54,9 +69,7 @@ public class MinecraftParser {
 		try {
 			final File file = settings.getClientJsonFile();
 			
-			FileUtil.downloadFile(foundVersion.getUrl(), file, foundVersion.getSha1());
-			
-			client = Constants.GSON.fromJson(FileUtil.readText(file), CurrentClientJson.class);
+			client = FileUtil.downloadJson(foundVersion.getUrl(), file, null, foundVersion.getSha1(), CurrentClientJson.class);
 		} catch (final IOException ex) {
 			throw new IllegalStateException("Could not download / parse client json", ex);
 		}
@@ -64,6 +77,30 @@ public class MinecraftParser {
 		settings.getGeneratedSettings().setClientJson(client);
 	}
 	
+	private static void parseLocalClientJson(ProvidedSettings settings) {
+		Main.LOGGER.info("Parse local client json");
+		
+		final File file = settings.getClientJsonFile();
+		
+		if (!file.isFile()) {
+			throw new IllegalStateException("The client json " + file.getAbsolutePath() + " does not exist. Run once without offline mode to download it");
+		}
+		
+		final CurrentClientJson client;
+		
+		try {
+			client = FileUtil.readJson(file, CurrentClientJson.class);
+		} catch (final IOException ex) {
+			throw new IllegalStateException("Could not parse client json", ex);
+		}
+		
+		if (!settings.getVersion().equals(client.getId())) {
+			throw new IllegalStateException("The client json " + file.getAbsolutePath() + " is for version " + client.getId() + " and not for the requested version " + settings.getVersion());
+		}
+		
+		settings.getGeneratedSettings().setClientJson(client);
+	}
+	
 	private static void parseLibraries(ProvidedSettings settings) {
 		Main.LOGGER.info("Parse required libraries");
 		
@@ -0,0 +1,126 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.util.concurrent.TimeUnit;
+
+import net.hycrafthd.minecraft_downloader.Main;
+
+/**
+ * Adapts the concurrency limit of one host like tcp congestion control. Every successful response while all slots of
+ * the host are in use raises the limit by one per window (additive increase). Failed requests, throttling status codes
+ * and a response latency far above the usual latency of the host cut the limit (multiplicative decrease), at most
+ * once per round trip.
+ */
+public class AimdLimit {
+
+	private static final double DECREASE_FACTOR = 0.7;
+	private static final double LATENCY_TOLERANCE = 2;
+	private static final double SMOOTHING = 0.2;
+	private static final double BASELINE_SMOOTHING = 0.01;
+	private static final long MIN_DECREASE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final int MIN_LIMIT = 1;
+
+	private static volatile boolean enabled = true;
+
+	private final String host;
+	private final ConcurrencyLimiter limiter;
+
+	private int maxLimit;
+	private double limit;
+	private double latency = -1;
+	private double baseline = -1;
+	private long lastDecrease = System.nanoTime();
+
+	AimdLimit(String host, int limit, int maxLimit) {
+		this.host = host;
+		this.limiter = new ConcurrencyLimiter(limit);
+		this.limit = limit;
+		this.maxLimit = Math.max(limit, maxLimit);
+	}
+
+	/**
+	 * @param enabled If the limits adapt. Otherwise every host keeps the configured limit.
+	 */
+	public static void setEnabled(boolean enabled) {
+		AimdLimit.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	ConcurrencyLimiter getLimiter() {
+		return limiter;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	synchronized void reset(int limit, int maxLimit) {
+		this.limit = limit;
+		this.maxLimit = Math.max(limit, maxLimit);
+		limiter.setLimit(limit);
+	}
+
+	/**
+	 * Record a response of the host
+	 *
+	 * @param statusCode Http status code
+	 * @param nanos Time until the response headers were received
+	 */
+	synchronized void onResponse(int statusCode, long nanos) {
+		if (!enabled) {
+			return;
+		}
+
+		if (statusCode == 429 || statusCode >= 500) {
+			decrease("http status " + statusCode);
+			return;
+		}
+
+		latency = latency < 0 ? nanos : latency + SMOOTHING * (nanos - latency);
+		// The baseline follows the latency slowly upwards, but immediately downwards
+		baseline = baseline < 0 ? latency : Math.min(latency, baseline + BASELINE_SMOOTHING * (latency - baseline));
+
+		if (latency > baseline * LATENCY_TOLERANCE) {
+			decrease("rising latency");
+		} else if (limit < maxLimit && limiter.getInFlight() >= limiter.getLimit()) {
+			// Only grow if the limit is really what holds the downloads back
+			limit = Math.min(maxLimit, limit + 1 / limit);
+			apply();
+		}
+	}
+
+	/**
+	 * Record a request that failed without a response, for example because of a timeout
+	 */
+	synchronized void onFailure() {
+		if (enabled) {
+			decrease("failed request");
+		}
+	}
+
+	private void decrease(String reason) {
+		final long now = System.nanoTime();
+		if (now - lastDecrease < Math.max(MIN_DECREASE_INTERVAL, (long) latency)) {
+			return;
+		}
+		lastDecrease = now;
+		limit = Math.max(MIN_LIMIT, limit * DECREASE_FACTOR);
+		Main.LOGGER.debug("Decrease concurrency limit of host {} because of {}", host, reason);
+		apply();
+	}
+
+	private void apply() {
+		final int value = (int) limit;
+		if (value != limiter.getLimit()) {
+			limiter.setLimit(value);
+			Main.LOGGER.debug("Concurrency limit of host {} is now {}", host, value);
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.UUID;
+
+import net.hycrafthd.minecraft_downloader.Constants;
+import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.util.FileUtil;
+import net.hycrafthd.minecraft_downloader.util.StringUtil;
+
+/**
+ * Content addressed store of verified files which is shared between output directories. Files are keyed by their
+ * SHA-1 and are hard linked into the output directories if possible, otherwise they are copied. Executable files are
+ * always copied, so changing their mode does not change the stored object of every other output directory.
+ */
+public class ArtifactStore {
+
+	private static volatile File directory;
+
+	public static void setDirectory(File directory) {
+		if (directory != null) {
+			FileUtil.createFolders(directory);
+		}
+		ArtifactStore.directory = directory;
+	}
+
+	public static boolean isEnabled() {
+		return directory != null;
+	}
+
+	public static boolean restore(String sha1, long expectedSize, File output) throws IOException {
+		return restore(sha1, expectedSize, output, false);
+	}
+
+	/**
+	 * Fill the output from the store. The stored object is hashed first, so a damaged object is removed from the store
+	 * instead of being placed in every output directory.
+	 *
+	 * @param sha1 SHA-1 of the file
+	 * @param expectedSize Expected size of the file or a negative value if unknown
+	 * @param output File that should be filled
+	 * @param executable If the output should be executable
+	 * @return True if the file was found in the store and placed at the output
+	 */
+	public static boolean restore(String sha1, long expectedSize, File output, boolean executable) throws IOException {
+		final File stored = getFile(sha1);
+		if (stored == null || !stored.isFile() || (expectedSize >= 0 && stored.length() != expectedSize)) {
+			return false;
+		}
+
+		final MessageDigest digest = FileUtil.createSha1Digest();
+		FileUtil.updateDigest(digest, stored);
+		if (!FileUtil.digestMatches(digest, FileUtil.hexToBytes(sha1))) {
+			Main.LOGGER.warn("Stored file {} does not match its SHA-1 and is removed from the artifact store", stored);
+			Files.deleteIfExists(stored.toPath());
+			return false;
+		}
+
+		if (executable) {
+			FileUtil.copyFile(stored, output);
+			output.setExecutable(true);
+		} else {
+			FileUtil.linkFile(stored, output);
+		}
+
+		Main.LOGGER.debug("Restored file {} from artifact store", output);
+		return true;
+	}
+
+	public static void store(String sha1, File file) {
+		store(sha1, file, false);
+	}
+
+	/**
+	 * Add a verified file to the store. Failures are only logged, as the store is just an optimization.
+	 *
+	 * @param sha1 SHA-1 of the file
+	 * @param file Verified file
+	 * @param executable If the file is executable
+	 */
+	public static void store(String sha1, File file, boolean executable) {
+		final File stored = getFile(sha1);
+		if (stored == null || stored.isFile()) {
+			return;
+		}
+
+		try {
+			FileUtil.createParentFolders(stored);
+
+			// Other processes might add the same file at the same time
+			final File partFile = new File(stored.getParentFile(), stored.getName() + "." + UUID.randomUUID() + FileUtil.PART_FILE_EXTENSION);
+			if (executable) {
+				Files.copy(file.toPath(), partFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} else {
+				FileUtil.linkOrCopy(file.toPath(), partFile.toPath());
+			}
+			FileUtil.moveFile(partFile, stored);
+
+			Main.LOGGER.debug("Added file {} to artifact store", file);
+		} catch (final IOException | RuntimeException ex) {
+			Main.LOGGER.warn("Could not add file {} to artifact store", file, ex);
+		}
+	}
+
+	private static File getFile(String sha1) {
+		final File storeDirectory = directory;
+		if (storeDirectory == null || sha1 == null) {
+			return null;
+		}
+
+		final String hash = sha1.toLowerCase(Locale.ROOT);
+		return new File(storeDirectory, "objects" + Constants.FILE_SEPERATOR + StringUtil.first2Letters(hash) + Constants.FILE_SEPERATOR + hash);
+	}
+
+}
@@ -0,0 +1,108 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.hycrafthd.minecraft_downloader.Constants;
+import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.util.FileUtil;
+import net.hycrafthd.minecraft_downloader.util.StringUtil;
+
+/**
+ * Records which asset objects a game run read and in which order, per asset index. The access times of the objects
+ * are scanned after the game exited and the asset downloads finished. Objects this process downloaded or verified are
+ * skipped, because their access times come from the downloader. Later downloads of the same asset index fetch the
+ * recorded objects first. File systems mounted with noatime do not record access times, so no profile is created there.
+ */
+public class AssetAccessProfile {
+
+	private static final String DIRECTORY_NAME = "access_profiles";
+	private static final String FILE_EXTENSION = ".txt";
+
+	/**
+	 * Load the recorded hashes of an asset index in first access order
+	 */
+	public static List<String> load(File assetsDirectory, String indexId) {
+		final File file = getFile(assetsDirectory, indexId);
+		if (!file.isFile()) {
+			return List.of();
+		}
+
+		try {
+			return FileUtil.readText(file).lines().filter(line -> !line.isBlank()).toList();
+		} catch (final IOException ex) {
+			Main.LOGGER.warn("Could not read asset access profile {}", file, ex);
+			return List.of();
+		}
+	}
+
+	/**
+	 * Rank of every recorded hash in first access order
+	 */
+	public static Map<String, Integer> ranks(List<String> profile) {
+		final Map<String, Integer> ranks = new HashMap<>(profile.size());
+		for (int index = 0; index < profile.size(); index++) {
+			ranks.putIfAbsent(profile.get(index), index);
+		}
+		return ranks;
+	}
+
+	/**
+	 * Scan the asset objects for files that were read since the game was started and merge them into the profile
+	 *
+	 * @param assetsDirectory Assets directory
+	 * @param indexId Id of the asset index
+	 * @param hashes Hashes of all objects of the asset index
+	 * @param since Time in milliseconds when the game was started
+	 */
+	public static void record(File assetsDirectory, String indexId, Collection<String> hashes, long since) {
+		final Map<String, Long> accessed = new HashMap<>();
+
+		for (final String hash : new LinkedHashSet<>(hashes)) {
+			final File object = new File(assetsDirectory, "objects" + Constants.FILE_SEPERATOR + StringUtil.first2Letters(hash) + Constants.FILE_SEPERATOR + hash);
+			// Downloading, restoring and hashing an object reads it as well, so only objects the downloader left alone count
+			if (VerificationJournal.isTouched(object)) {
+				continue;
+			}
+			try {
+				final BasicFileAttributes attributes = Files.readAttributes(object.toPath(), BasicFileAttributes.class);
+				final long accessTime = attributes.lastAccessTime().toMillis();
+				if (accessTime >= since && accessTime > attributes.lastModifiedTime().toMillis()) {
+					accessed.put(hash, accessTime);
+				}
+			} catch (final IOException ex) {
+				// Object does not exist
+			}
+		}
+
+		if (accessed.isEmpty()) {
+			Main.LOGGER.debug("No asset access was recorded for asset index {}", indexId);
+			return;
+		}
+
+		final Set<String> profile = new LinkedHashSet<>();
+		accessed.entrySet().stream().sorted(Map.Entry.comparingByValue()).map(Map.Entry::getKey).forEach(profile::add);
+		profile.addAll(load(assetsDirectory, indexId));
+
+		final File file = getFile(assetsDirectory, indexId);
+		try {
+			FileUtil.writeText(profile.stream(), file);
+			Main.LOGGER.info("Recorded access of {} asset objects for asset index {}", accessed.size(), indexId);
+		} catch (final IOException ex) {
+			Main.LOGGER.warn("Could not write asset access profile {}", file, ex);
+		}
+	}
+
+	private static File getFile(File assetsDirectory, String indexId) {
+		return new File(assetsDirectory, DIRECTORY_NAME + Constants.FILE_SEPERATOR + indexId + FILE_EXTENSION);
+	}
+
+}
@@ -0,0 +1,95 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.hycrafthd.minecraft_downloader.Main;
+
+/**
+ * Changes the bandwidth limit while files are downloading. A properties file is checked every second and applied to
+ * the {@link BandwidthLimiter} whenever it was modified. It uses the keys of the command line options:
+ *
+ * <pre>
+ * max-bandwidth=512
+ * bandwidth-weights=asset=1,library=4
+ * </pre>
+ *
+ * Keys that are missing keep their current value.
+ */
+public class BandwidthControl {
+
+	public static final String MAX_BANDWIDTH = "max-bandwidth";
+	public static final String BANDWIDTH_WEIGHTS = "bandwidth-weights";
+
+	private static final long CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+	private static volatile File file;
+	private static volatile long lastModified;
+
+	/**
+	 * Apply the file now and check it for changes until the process exits
+	 */
+	public static synchronized void watch(File file) {
+		if (BandwidthControl.file != null) {
+			throw new IllegalStateException("Bandwidth control file is already watched");
+		}
+		BandwidthControl.file = file;
+		check();
+
+		final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "Bandwidth Control");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(BandwidthControl::check, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+
+		Main.LOGGER.info("Bandwidth limit can be changed in {}", file.getAbsolutePath());
+	}
+
+	/**
+	 * @return True if the limit can change at runtime, so downloads must be limitable even if there is no limit yet
+	 */
+	static boolean isWatching() {
+		return file != null;
+	}
+
+	private static void check() {
+		final File controlFile = file;
+		final long modified = controlFile.lastModified();
+		if (modified == 0 || modified == lastModified) {
+			return;
+		}
+		lastModified = modified;
+
+		final Properties properties = new Properties();
+		try (final Reader reader = Files.newBufferedReader(controlFile.toPath(), StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		} catch (final IOException ex) {
+			Main.LOGGER.warn("Could not read bandwidth control file {}", controlFile, ex);
+			return;
+		}
+
+		try {
+			final String maxBandwidth = properties.getProperty(MAX_BANDWIDTH);
+			if (maxBandwidth != null) {
+				BandwidthLimiter.setRate(Long.parseLong(maxBandwidth.trim()) * 1024);
+			}
+			final String weights = properties.getProperty(BANDWIDTH_WEIGHTS);
+			if (weights != null) {
+				BandwidthLimiter.setWeights(BandwidthLimiter.parseWeights(weights));
+			}
+			Main.LOGGER.info("Changed bandwidth limit to {} KB/s with weights {}", BandwidthLimiter.getRate() / 1024, weights == null ? "unchanged" : weights);
+		} catch (final IllegalArgumentException ex) {
+			// Also covers NumberFormatException
+			Main.LOGGER.warn("Invalid bandwidth control file {}: {}", controlFile, ex.getMessage());
+		}
+	}
+
+}
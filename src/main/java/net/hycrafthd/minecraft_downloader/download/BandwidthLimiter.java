@@ -0,0 +1,266 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.hycrafthd.minecraft_downloader.download.DownloadPriority.Level;
+
+/**
+ * Token bucket that limits the bandwidth of all downloads. Optionally the bandwidth is shared between the download
+ * phases by weight. Every phase that currently transfers data gets its weight's share of the global rate, so for
+ * example assets cannot starve the libraries. The rate and the weights can be changed while downloads are running,
+ * for example through the {@link BandwidthControl} file.
+ */
+public class BandwidthLimiter {
+
+	private static final double BURST_SECONDS = 0.25;
+	private static final double MIN_BURST = 64 * 1024;
+
+	private static final TokenBucket GLOBAL = new TokenBucket();
+	private static final Map<Level, TokenBucket> PHASES = new EnumMap<>(Level.class);
+	private static final Map<Level, Double> WEIGHTS = new EnumMap<>(Level.class);
+	private static final Map<Level, Integer> ACTIVE = new EnumMap<>(Level.class);
+
+	private static volatile long rate;
+
+	static {
+		for (final Level level : Level.values()) {
+			PHASES.put(level, new TokenBucket());
+			ACTIVE.put(level, 0);
+		}
+	}
+
+	/**
+	 * @param bytesPerSecond Global bandwidth limit or zero for no limit
+	 */
+	public static synchronized void setRate(long bytesPerSecond) {
+		if (bytesPerSecond < 0) {
+			throw new IllegalArgumentException("Bandwidth must not be negative");
+		}
+		rate = bytesPerSecond;
+		GLOBAL.setRate(bytesPerSecond);
+		updateShares();
+	}
+
+	public static synchronized long getRate() {
+		return rate;
+	}
+
+	/**
+	 * Set the weights of the phases. Phases without a weight get a weight of one. If no weights are set, only the global
+	 * rate is limited.
+	 */
+	public static synchronized void setWeights(Map<Level, Double> weights) {
+		weights.values().forEach(BandwidthLimiter::checkWeight);
+		WEIGHTS.clear();
+		WEIGHTS.putAll(weights);
+		updateShares();
+	}
+
+	public static synchronized void setWeight(Level level, double weight) {
+		WEIGHTS.put(level, checkWeight(weight));
+		updateShares();
+	}
+
+	/**
+	 * Parse weights in the format {@code phase=weight,phase=weight}, for example {@code asset=1,library=4}
+	 */
+	public static Map<Level, Double> parseWeights(String value) {
+		final Map<Level, Double> weights = new EnumMap<>(Level.class);
+		for (final String entry : value.split(",")) {
+			if (entry.isBlank()) {
+				continue;
+			}
+			final int separator = entry.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Bandwidth weight " + entry + " must have the format phase=weight");
+			}
+			final String phase = entry.substring(0, separator).trim();
+			final Level level;
+			try {
+				level = Level.valueOf(phase.toUpperCase(Locale.ROOT));
+			} catch (final IllegalArgumentException ex) {
+				throw new IllegalArgumentException("Unknown download phase " + phase);
+			}
+			try {
+				weights.put(level, checkWeight(Double.parseDouble(entry.substring(separator + 1).trim())));
+			} catch (final NumberFormatException ex) {
+				throw new IllegalArgumentException("Invalid bandwidth weight " + entry);
+			}
+		}
+		return weights;
+	}
+
+	/**
+	 * Wrap the stream of a download, so reading from it is limited. The phase is taken from the priority of the current
+	 * thread. Without a limit the stream is returned as is, so streams that are opened before a limit is set stay
+	 * unlimited. If the limit can be changed at runtime, every stream is wrapped.
+	 */
+	public static InputStream wrap(InputStream inputStream) {
+		if (rate == 0 && !BandwidthControl.isWatching()) {
+			return inputStream;
+		}
+		return new LimitedInputStream(inputStream, DownloadPriority.attached().level());
+	}
+
+	private static double checkWeight(double weight) {
+		if (!(weight > 0)) {
+			throw new IllegalArgumentException("Bandwidth weight must be greater than zero, but was " + weight);
+		}
+		return weight;
+	}
+
+	private static synchronized void changeActive(Level level, int change) {
+		ACTIVE.merge(level, change, Integer::sum);
+		updateShares();
+	}
+
+	/**
+	 * Give every active phase its share of the global rate
+	 */
+	private static void updateShares() {
+		if (WEIGHTS.isEmpty() || rate == 0) {
+			PHASES.values().forEach(bucket -> bucket.setRate(0));
+			return;
+		}
+
+		double activeWeight = 0;
+		for (final Level level : Level.values()) {
+			if (ACTIVE.get(level) > 0) {
+				activeWeight += WEIGHTS.getOrDefault(level, 1D);
+			}
+		}
+
+		for (final Level level : Level.values()) {
+			final double weight = WEIGHTS.getOrDefault(level, 1D);
+			// Phases that are not active yet get the share they would have as the only other active phase
+			final double totalWeight = ACTIVE.get(level) > 0 ? activeWeight : activeWeight + weight;
+			PHASES.get(level).setRate(rate * weight / totalWeight);
+		}
+	}
+
+	private static void acquire(Level level, long bytes) throws InterruptedIOException {
+		final long wait = Math.max(GLOBAL.reserve(bytes), PHASES.get(level).reserve(bytes));
+		if (wait <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+		}
+	}
+
+	private static class TokenBucket {
+
+		private double rate;
+		private double tokens;
+		private long last = System.nanoTime();
+
+		private synchronized void setRate(double rate) {
+			refill();
+			this.rate = rate;
+			tokens = Math.min(tokens, getCapacity());
+		}
+
+		/**
+		 * Take the bytes from the bucket. The bucket can go into debt, which the caller pays by waiting.
+		 *
+		 * @return Nanoseconds the caller has to wait
+		 */
+		private synchronized long reserve(long bytes) {
+			if (rate <= 0) {
+				return 0;
+			}
+			refill();
+			tokens -= bytes;
+			return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+		}
+
+		private void refill() {
+			final long now = System.nanoTime();
+			if (rate > 0) {
+				tokens = Math.min(getCapacity(), tokens + (now - last) * rate / TimeUnit.SECONDS.toNanos(1));
+			}
+			last = now;
+		}
+
+		private double getCapacity() {
+			return Math.max(MIN_BURST, rate * BURST_SECONDS);
+		}
+	}
+
+	private static class LimitedInputStream extends FilterInputStream {
+
+		private final Level level;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private LimitedInputStream(InputStream inputStream, Level level) {
+			super(inputStream);
+			this.level = level;
+			changeActive(level, 1);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int value = super.read();
+			if (value >= 0) {
+				acquire(level, 1);
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			final int read = super.read(buffer, offset, length);
+			if (read > 0) {
+				acquire(level, read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long length) throws IOException {
+			// Skipped bytes are still transferred over the network
+			final long skipped = super.skip(length);
+			if (skipped > 0) {
+				acquire(level, skipped);
+			}
+			return skipped;
+		}
+
+		@Override
+		public long transferTo(OutputStream outputStream) throws IOException {
+			// Read through this stream instead of the wrapped one, so every chunk is limited
+			final byte[] buffer = new byte[8192];
+			long transferred = 0;
+			int read;
+			while ((read = read(buffer, 0, buffer.length)) >= 0) {
+				outputStream.write(buffer, 0, read);
+				transferred += read;
+			}
+			return transferred;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (closed.compareAndSet(false, true)) {
+					changeActive(level, -1);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of heap buffers for file transfers and hashing. Thousands of files go through the same few buffers instead of
+ * allocating new ones per file. The sources are input streams and the digest reads arrays, so heap buffers can be
+ * filled and hashed without the extra copies a direct buffer needs. Virtual threads are cheap and short lived, so the buffers are pooled globally and not
+ * per thread.
+ */
+public class BufferPool {
+
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int MAX_POOLED = 256;
+
+	private static final Queue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger POOLED = new AtomicInteger();
+
+	/**
+	 * Get a cleared buffer. It must be given back with {@link #release(ByteBuffer)} when it is not used anymore.
+	 */
+	public static ByteBuffer acquire() {
+		final ByteBuffer buffer = POOL.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocate(BUFFER_SIZE);
+		}
+		POOLED.decrementAndGet();
+		return buffer.clear();
+	}
+
+	public static void release(ByteBuffer buffer) {
+		// Buffers above the pool size are left to the garbage collector
+		if (POOLED.incrementAndGet() <= MAX_POOLED) {
+			POOL.offer(buffer);
+		} else {
+			POOLED.decrementAndGet();
+		}
+	}
+
+}
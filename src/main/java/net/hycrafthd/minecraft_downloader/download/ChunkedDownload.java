@@ -0,0 +1,293 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.hycrafthd.minecraft_downloader.Main;
+
+/**
+ * Downloads large files as byte ranges over several connections at the same time. The ranges are written at their
+ * position in the part file. The SHA-1 is updated in file order whenever the ranges from the start of the file are
+ * complete, so only the last ranges need to be hashed after the transfer. Completed ranges are recorded in a state file
+ * next to the part file, so an interrupted download only fetches the missing ranges again.
+ */
+public class ChunkedDownload {
+
+	public static final long DEFAULT_THRESHOLD = 8 * 1024 * 1024;
+	public static final int DEFAULT_CHUNKS = 4;
+
+	private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+	private static final String STATE_FILE_EXTENSION = ".chunks";
+
+	private static volatile long threshold = DEFAULT_THRESHOLD;
+	private static volatile int chunks = DEFAULT_CHUNKS;
+
+	/**
+	 * @param threshold Files with at least this many bytes are downloaded in chunks
+	 * @param chunks Number of chunks a file is split into. One disables chunked downloads.
+	 */
+	public static void configure(long threshold, int chunks) {
+		if (chunks < 1) {
+			throw new IllegalArgumentException("Chunk count must be at least 1, but was " + chunks);
+		}
+		ChunkedDownload.threshold = threshold;
+		ChunkedDownload.chunks = chunks;
+	}
+
+	public static boolean isChunked(Integer size) {
+		return chunks > 1 && size != null && size >= threshold && size >= 2 * MIN_CHUNK_SIZE;
+	}
+
+	/**
+	 * @return True if the part file belongs to an interrupted chunked download that can be resumed
+	 */
+	public static boolean canResume(File partFile) {
+		return partFile.isFile() && getStateFile(partFile).isFile();
+	}
+
+	/**
+	 * Download the url into the part file. Ranges that were completed by an interrupted download of the same file are
+	 * kept. If the server does not support range requests the file is downloaded over a single connection.
+	 *
+	 * @param url Url of the file
+	 * @param partFile Part file that is resumed or overwritten
+	 * @param size Size of the file
+	 * @param digest Empty digest that is updated with the content of the file
+	 */
+	public static void download(String url, File partFile, long size, MessageDigest digest) throws IOException {
+		final long chunkSize = Math.max(MIN_CHUNK_SIZE, (size + chunks - 1) / chunks);
+
+		final List<Chunk> chunkList = new ArrayList<>();
+		for (long start = 0; start < size; start += chunkSize) {
+			chunkList.add(new Chunk(chunkList.size(), start, Math.min(size, start + chunkSize) - 1));
+		}
+
+		final File stateFile = getStateFile(partFile);
+		final String header = size + " " + chunkSize;
+		final boolean[] completed = partFile.isFile() ? readState(stateFile, header, chunkList.size()) : null;
+
+		try (final FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+			if (completed == null) {
+				channel.truncate(0);
+				Files.writeString(stateFile.toPath(), header + System.lineSeparator(), StandardCharsets.UTF_8);
+			}
+
+			final Hasher hasher = new Hasher(channel, chunkList, digest, stateFile, completed);
+			final List<Chunk> missing = hasher.getMissing();
+
+			if (missing.isEmpty()) {
+				Main.LOGGER.debug("All chunks of {} were already downloaded", url);
+				hasher.finish();
+				return;
+			}
+
+			final Chunk first = missing.get(0);
+			final DownloadResponse firstResponse = DownloadEngine.openRange(url, first.start(), first.end());
+
+			if (!firstResponse.isPartial()) {
+				Main.LOGGER.debug("Server does not support range requests for {}. Download it over a single connection", url);
+				try (firstResponse) {
+					stateFile.delete();
+					digest.reset();
+					final long written = write(firstResponse.inputStream(), channel, 0, digest);
+					channel.truncate(written);
+				}
+				return;
+			}
+
+			if (completed != null) {
+				Main.LOGGER.debug("Resume download of {} with {} of {} chunks missing", url, missing.size(), chunkList.size());
+			} else {
+				Main.LOGGER.debug("Download {} in {} chunks of {} bytes", url, chunkList.size(), chunkSize);
+			}
+
+			final DownloadPriority priority = DownloadPriority.attached();
+
+			try {
+				DownloadScheduler.forEach(missing, unused -> priority, chunk -> {
+					try (final DownloadResponse response = chunk == first ? firstResponse : DownloadEngine.openRange(url, chunk.start(), chunk.end())) {
+						if (!response.isPartial()) {
+							throw new IOException("Server did not answer the range request for bytes " + chunk.start() + "-" + chunk.end() + " of " + url);
+						}
+						final long written = write(response.inputStream(), channel, chunk.start(), null);
+						if (written != chunk.length()) {
+							throw new NetworkException("Received " + written + " bytes instead of " + chunk.length() + " for bytes " + chunk.start() + "-" + chunk.end() + " of " + url);
+						}
+						hasher.complete(chunk);
+					} catch (final IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				});
+			} catch (final UncheckedIOException ex) {
+				throw ex.getCause();
+			}
+
+			hasher.finish();
+		}
+	}
+
+	private static File getStateFile(File partFile) {
+		return new File(partFile.getPath() + STATE_FILE_EXTENSION);
+	}
+
+	/**
+	 * @return The chunks that are recorded as complete or null if there is no state for the same file and chunk layout
+	 */
+	private static boolean[] readState(File stateFile, String header, int chunkCount) {
+		if (!stateFile.isFile()) {
+			return null;
+		}
+
+		try {
+			final List<String> lines = Files.readAllLines(stateFile.toPath(), StandardCharsets.UTF_8);
+			if (lines.isEmpty() || !lines.get(0).equals(header)) {
+				return null;
+			}
+
+			final boolean[] completed = new boolean[chunkCount];
+			for (final String line : lines.subList(1, lines.size())) {
+				try {
+					final int index = Integer.parseInt(line.trim());
+					if (index >= 0 && index < chunkCount) {
+						completed[index] = true;
+					}
+				} catch (final NumberFormatException ex) {
+					// A line that was cut off by a crash, the chunk is just downloaded again
+				}
+			}
+			return completed;
+		} catch (final IOException ex) {
+			Main.LOGGER.debug("Could not read chunk state {}", stateFile, ex);
+			return null;
+		}
+	}
+
+	private static long write(InputStream inputStream, FileChannel channel, long position, MessageDigest digest) throws IOException {
+		final ByteBuffer buffer = BufferPool.acquire();
+		final byte[] array = buffer.array();
+		long written = 0;
+
+		try {
+			int read;
+			while ((read = inputStream.read(array, 0, array.length)) >= 0) {
+				if (digest != null) {
+					digest.update(array, 0, read);
+				}
+				buffer.clear().limit(read);
+				while (buffer.hasRemaining()) {
+					written += channel.write(buffer, position + written);
+				}
+			}
+		} finally {
+			BufferPool.release(buffer);
+		}
+		return written;
+	}
+
+	private record Chunk(int index, long start, long end) {
+
+		private long length() {
+			return end - start + 1;
+		}
+	}
+
+	/**
+	 * Hashes the chunks in file order as soon as all chunks before them are complete and records completed chunks in
+	 * the state file. A lock is used instead of synchronized, because the chunks are hashed from the disk while it is
+	 * held and the callers are virtual threads.
+	 */
+	private static class Hasher {
+
+		private final FileChannel channel;
+		private final List<Chunk> chunks;
+		private final MessageDigest digest;
+		private final File stateFile;
+		private final boolean[] completed;
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private int next;
+
+		private Hasher(FileChannel channel, List<Chunk> chunks, MessageDigest digest, File stateFile, boolean[] completed) {
+			this.channel = channel;
+			this.chunks = chunks;
+			this.digest = digest;
+			this.stateFile = stateFile;
+			this.completed = completed == null ? new boolean[chunks.size()] : completed;
+		}
+
+		private List<Chunk> getMissing() {
+			return chunks.stream().filter(chunk -> !completed[chunk.index()]).toList();
+		}
+
+		private void complete(Chunk chunk) throws IOException {
+			lock.lock();
+			try {
+				// The data must be on the disk before the chunk is recorded as complete
+				channel.force(false);
+				Files.writeString(stateFile.toPath(), chunk.index() + System.lineSeparator(), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+				completed[chunk.index()] = true;
+				hashCompleted();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Hash the remaining chunks. The state file is not needed anymore, because every chunk is complete.
+		 */
+		private void finish() throws IOException {
+			lock.lock();
+			try {
+				hashCompleted();
+				if (next < completed.length) {
+					throw new IOException("Chunk " + next + " is not complete");
+				}
+				stateFile.delete();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void hashCompleted() throws IOException {
+			while (next < completed.length && completed[next]) {
+				hash(chunks.get(next));
+				next++;
+			}
+		}
+
+		private void hash(Chunk chunk) throws IOException {
+			final ByteBuffer buffer = BufferPool.acquire();
+			long position = chunk.start();
+
+			try {
+				while (position <= chunk.end()) {
+					buffer.clear().limit((int) Math.min(buffer.capacity(), chunk.end() - position + 1));
+					final int read = channel.read(buffer, position);
+					if (read < 0) {
+						// The part file lost data that was recorded as complete, so the download starts over
+						stateFile.delete();
+						throw new InvalidContentException("Unexpected end of file while hashing bytes " + chunk.start() + "-" + chunk.end());
+					}
+					buffer.flip();
+					digest.update(buffer);
+					position += read;
+				}
+			} finally {
+				BufferPool.release(buffer);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import net.hycrafthd.minecraft_downloader.Main;
+
+/**
+ * Pauses the requests to a host that keeps failing, so the other hosts can continue while it recovers. After a number
+ * of failures in a row the breaker opens and new requests to the host wait until it closes again. If the first request
+ * after the pause fails too, the breaker opens again for twice as long.
+ */
+public class CircuitBreaker {
+
+	private static final int FAILURE_THRESHOLD = 5;
+	private static final Duration OPEN_DURATION = Duration.ofSeconds(5);
+	private static final Duration MAX_OPEN_DURATION = Duration.ofMinutes(1);
+
+	private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+	private final String host;
+
+	private int failures;
+	private int trips;
+	private long openUntil = System.nanoTime();
+
+	private CircuitBreaker(String host) {
+		this.host = host;
+	}
+
+	public static CircuitBreaker forHost(String host) {
+		return BREAKERS.computeIfAbsent(host, CircuitBreaker::new);
+	}
+
+	public static CircuitBreaker forUrl(String url) {
+		try {
+			return forHost(DownloadEngine.getHost(URI.create(url)));
+		} catch (final IllegalArgumentException ex) {
+			return forHost("");
+		}
+	}
+
+	/**
+	 * Wait until the breaker of the host is closed
+	 */
+	public void await() throws InterruptedIOException {
+		long remaining;
+		while ((remaining = getRemaining()) > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(remaining);
+			} catch (final InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for host " + host);
+			}
+		}
+	}
+
+	public synchronized void recordSuccess() {
+		failures = 0;
+		trips = 0;
+	}
+
+	public synchronized void recordFailure() {
+		failures++;
+		// Failures of requests that were started before the breaker opened do not extend the pause
+		if (failures >= FAILURE_THRESHOLD && getRemaining() <= 0) {
+			final Duration duration = OPEN_DURATION.multipliedBy(1L << Math.min(trips, 10));
+			trips++;
+			open(duration.compareTo(MAX_OPEN_DURATION) > 0 ? MAX_OPEN_DURATION : duration);
+		}
+	}
+
+	/**
+	 * Pause all requests to the host for at least the duration, for example if the server sent a Retry-After header
+	 */
+	public synchronized void pause(Duration duration) {
+		final long until = System.nanoTime() + duration.toNanos();
+		if (until - openUntil > 0) {
+			open(duration);
+		}
+	}
+
+	private void open(Duration duration) {
+		openUntil = System.nanoTime() + duration.toNanos();
+		Main.LOGGER.warn("Pause requests to host {} for {} ms", host, duration.toMillis());
+	}
+
+	private synchronized long getRemaining() {
+		return openUntil - System.nanoTime();
+	}
+
+}
@@ -0,0 +1,133 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many transfers may run at the same time. Waiting threads are served by their {@link DownloadPriority} and
+ * in arrival order for the same priority.
+ */
+public class ConcurrencyLimiter {
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::sequence));
+
+	private int limit;
+	private int inFlight;
+	private long sequence;
+
+	public ConcurrencyLimiter(int limit) {
+		this.limit = checkLimit(limit);
+	}
+
+	public void acquire(DownloadPriority priority) throws InterruptedIOException {
+		lock.lock();
+		try {
+			if (inFlight < limit && waiters.isEmpty()) {
+				inFlight++;
+				return;
+			}
+
+			final Waiter waiter = new Waiter(priority, sequence++, lock.newCondition());
+			waiters.add(waiter);
+
+			try {
+				while (!waiter.granted) {
+					waiter.condition.await();
+				}
+			} catch (final InterruptedException ex) {
+				if (waiter.granted) {
+					inFlight--;
+				} else {
+					waiters.remove(waiter);
+				}
+				grantWaiters();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a download slot");
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void release() {
+		lock.lock();
+		try {
+			inFlight--;
+			grantWaiters();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void setLimit(int limit) {
+		lock.lock();
+		try {
+			this.limit = checkLimit(limit);
+			grantWaiters();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getLimit() {
+		lock.lock();
+		try {
+			return limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void grantWaiters() {
+		while (inFlight < limit && !waiters.isEmpty()) {
+			final Waiter waiter = waiters.poll();
+			waiter.granted = true;
+			inFlight++;
+			waiter.condition.signal();
+		}
+	}
+
+	private static int checkLimit(int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Concurrency limit must be at least 1, but was " + limit);
+		}
+		return limit;
+	}
+
+	private static class Waiter {
+
+		private final DownloadPriority priority;
+		private final long sequence;
+		private final Condition condition;
+
+		private boolean granted;
+
+		private Waiter(DownloadPriority priority, long sequence, Condition condition) {
+			this.priority = priority;
+			this.sequence = sequence;
+			this.condition = condition;
+		}
+
+		private DownloadPriority priority() {
+			return priority;
+		}
+
+		private long sequence() {
+			return sequence;
+		}
+	}
+
+}
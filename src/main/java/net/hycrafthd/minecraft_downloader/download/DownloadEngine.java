@@ -0,0 +1,669 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import net.hycrafthd.minecraft_downloader.Constants;
+import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.download.DownloadPriority.Level;
+import net.hycrafthd.minecraft_downloader.download.MirrorSelector.Candidate;
+
+/**
+ * Shared http engine for all downloads. All requests go through one {@link HttpClient} so connections are pooled and
+ * http/2 streams are multiplexed to the same host instead of opening a new connection per file.
+ */
+public class DownloadEngine {
+
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(15);
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(15);
+	private static final Duration READ_TIMEOUT = Duration.ofSeconds(15);
+
+	public static final int DEFAULT_MAX_DOWNLOADS = 64;
+	public static final int DEFAULT_MAX_DOWNLOADS_PER_HOST = 16;
+
+	private static final HttpClient CLIENT = createClient();
+
+	// Own connection pool for hedged requests, so they do not end up on the same stalled connection
+	private static final HttpClient HEDGE_CLIENT = createClient();
+
+	private static final ConcurrencyLimiter GLOBAL_LIMITER = new ConcurrencyLimiter(DEFAULT_MAX_DOWNLOADS);
+	private static final Map<String, AimdLimit> HOST_LIMITS = new ConcurrentHashMap<>();
+
+	// The request timeout only covers the response headers, so stalled response bodies are aborted by a watchdog
+	private static final Set<IdleTimeoutInputStream> READING = ConcurrentHashMap.newKeySet();
+	private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "Download Watchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		WATCHDOG.scheduleWithFixedDelay(() -> READING.forEach(IdleTimeoutInputStream::checkTimeout), 1, 1, TimeUnit.SECONDS);
+	}
+
+	private static volatile int maxDownloadsPerHost = DEFAULT_MAX_DOWNLOADS_PER_HOST;
+	private static volatile boolean offline;
+
+	public static void setConcurrencyLimits(int maxDownloads, int maxDownloadsPerHost) {
+		GLOBAL_LIMITER.setLimit(maxDownloads);
+		DownloadEngine.maxDownloadsPerHost = maxDownloadsPerHost;
+		HOST_LIMITS.values().forEach(limit -> limit.reset(maxDownloadsPerHost, maxDownloads));
+	}
+
+	/**
+	 * Current concurrency limit of every host that was requested
+	 */
+	public static Map<String, Integer> getHostLimits() {
+		final Map<String, Integer> limits = new TreeMap<>();
+		HOST_LIMITS.forEach((host, limit) -> limits.put(host, limit.getLimit()));
+		return limits;
+	}
+
+	public static void logStatistics() {
+		if (AimdLimit.isEnabled()) {
+			getHostLimits().forEach((host, limit) -> Main.LOGGER.info("Concurrency limit of host {} is {}", host, limit));
+		}
+	}
+
+	/**
+	 * In offline mode every request fails immediately, so only files that are already on disk can be used
+	 */
+	public static void setOffline(boolean offline) {
+		DownloadEngine.offline = offline;
+	}
+
+	public static boolean isOffline() {
+		return offline;
+	}
+
+	public static InputStream openStream(String url) throws IOException {
+		return open(url, 0).inputStream();
+	}
+
+	/**
+	 * Open the url. If the offset is greater than zero only the bytes from the offset are requested. The server might
+	 * ignore that and send the whole file, which is reported by the offset of the response. A global and a per host
+	 * download slot is held until the returned response is closed. If mirrors are configured for the host, the best
+	 * mirror is used and the others are tried if it fails.
+	 */
+	public static DownloadResponse open(String url, long offset) throws IOException {
+		return open(url, offset, -1, false, null);
+	}
+
+	/**
+	 * Open the byte range from start to end (inclusive) of the url. If the server does not support ranges the response
+	 * is not partial and contains the whole file.
+	 */
+	public static DownloadResponse openRange(String url, long start, long end) throws IOException {
+		return open(url, start, end, false, null);
+	}
+
+	/**
+	 * Open the url for a transfer that is watched by {@link Hedging}. A hedged request goes to another mirror, or to the
+	 * same host over a new connection if there are no mirrors.
+	 *
+	 * @param end Last byte of the requested range or -1 for the end of the file
+	 * @param hedge If this is the hedged request
+	 * @param started Called when the download slots are acquired and the request is sent
+	 */
+	static DownloadResponse open(String url, long offset, long end, boolean hedge, Runnable started) throws IOException {
+		CircuitBreaker.forUrl(url).await();
+
+		final List<Candidate> candidates = MirrorSelector.getCandidates(url);
+
+		if (hedge && candidates.size() == 1) {
+			return openCandidate(HEDGE_CLIENT, candidates.get(0), offset, end, started);
+		}
+
+		return requestCandidates(hedge ? candidates.subList(1, candidates.size()) : candidates, candidate -> openCandidate(CLIENT, candidate, offset, end, started));
+	}
+
+	private static DownloadResponse openCandidate(HttpClient client, Candidate candidate, long offset, long end, Runnable started) throws IOException {
+		if (candidate.isFile()) {
+			if (started != null) {
+				started.run();
+			}
+			return openFile(candidate, offset, end);
+		}
+		return openHttp(client, candidate, offset, end, started);
+	}
+
+	private static DownloadResponse openHttp(HttpClient client, Candidate candidate, long offset, long end, Runnable started) throws IOException {
+		final String url = candidate.url();
+		final HttpRequest.Builder requestBuilder = createRequest(url).GET();
+		if (end >= 0) {
+			requestBuilder.header("Range", "bytes=" + offset + "-" + end);
+		} else if (offset > 0) {
+			requestBuilder.header("Range", "bytes=" + offset + "-");
+		}
+		final HttpRequest request = requestBuilder.build();
+		final Runnable releaser = acquireSlot(request.uri(), DownloadPriority.current());
+
+		try {
+			if (started != null) {
+				started.run();
+			}
+			final long start = System.nanoTime();
+			final HttpResponse<InputStream> response = send(client, request, BodyHandlers.ofInputStream());
+
+			if (!isSuccessful(response.statusCode())) {
+				response.body().close();
+				throw new HttpStatusException(url, response.statusCode(), parseRetryAfter(response));
+			}
+
+			final boolean partial = response.statusCode() == 206;
+			final long responseOffset = partial ? parseRangeStart(response, offset) : 0;
+
+			if (partial && responseOffset != offset) {
+				response.body().close();
+				throw new IOException("Server returned range starting at " + responseOffset + " but " + offset + " was requested for " + url);
+			}
+
+			candidate.recordLatency(System.nanoTime() - start);
+
+			return new DownloadResponse(new ReleasingInputStream(BandwidthLimiter.wrap(measure(candidate, new IdleTimeoutInputStream(response.body(), url))), releaser), responseOffset, partial);
+		} catch (final IOException | RuntimeException ex) {
+			releaser.run();
+			throw ex;
+		}
+	}
+
+	private static DownloadResponse openFile(Candidate candidate, long offset, long end) throws IOException {
+		final FileChannel channel = FileChannel.open(getPath(candidate), StandardOpenOption.READ);
+		try {
+			channel.position(offset);
+		} catch (final IOException ex) {
+			channel.close();
+			throw ex;
+		}
+		final InputStream inputStream = Channels.newInputStream(end >= 0 ? new RangeChannel(channel, end + 1) : channel);
+		return new DownloadResponse(measure(candidate, inputStream), offset, offset > 0 || end >= 0);
+	}
+
+	/**
+	 * Fetch a small metadata document. The validators of a cached copy are sent with the request, so the server can
+	 * answer with 304 if the document did not change. Gzip transfer encoding is requested and decoded. Failed requests
+	 * are retried with the {@link RetryPolicy}.
+	 */
+	public static MetadataResponse fetchMetadata(String url, String etag, String lastModified) throws IOException {
+		return RetryPolicy.run(url, () -> {
+			CircuitBreaker.forUrl(url).await();
+			return requestCandidates(MirrorSelector.getCandidates(url), candidate -> candidate.isFile() ? readFileMetadata(candidate) : requestMetadata(candidate, etag, lastModified));
+		});
+	}
+
+	private static MetadataResponse requestMetadata(Candidate candidate, String etag, String lastModified) throws IOException {
+		final String url = candidate.url();
+		final HttpRequest.Builder requestBuilder = createRequest(url).GET().header("Accept-Encoding", "gzip");
+		if (etag != null) {
+			requestBuilder.header("If-None-Match", etag);
+		}
+		if (lastModified != null) {
+			requestBuilder.header("If-Modified-Since", lastModified);
+		}
+		final HttpRequest request = requestBuilder.build();
+		final Runnable releaser = acquireSlot(request.uri(), DownloadPriority.of(Level.METADATA));
+
+		final HttpResponse<InputStream> response;
+		final byte[] responseBody;
+		try {
+			final long start = System.nanoTime();
+			response = send(CLIENT, request, BodyHandlers.ofInputStream());
+			candidate.recordLatency(System.nanoTime() - start);
+			try (final InputStream inputStream = new IdleTimeoutInputStream(response.body(), url)) {
+				responseBody = inputStream.readAllBytes();
+			}
+		} finally {
+			releaser.run();
+		}
+
+		if (response.statusCode() == 304) {
+			return new MetadataResponse(true, null, etag, lastModified);
+		}
+
+		if (!isSuccessful(response.statusCode())) {
+			throw new HttpStatusException(url, response.statusCode(), parseRetryAfter(response));
+		}
+
+		final byte[] body;
+		if (response.headers().firstValue("Content-Encoding").filter(encoding -> encoding.toLowerCase(Locale.ROOT).contains("gzip")).isPresent()) {
+			try (final InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(responseBody))) {
+				body = inputStream.readAllBytes();
+			}
+		} else {
+			body = responseBody;
+		}
+
+		return new MetadataResponse(false, new String(body, StandardCharsets.UTF_8), response.headers().firstValue("ETag").orElse(null), response.headers().firstValue("Last-Modified").orElse(null));
+	}
+
+	private static MetadataResponse readFileMetadata(Candidate candidate) throws IOException {
+		return new MetadataResponse(false, Files.readString(getPath(candidate)), null, null);
+	}
+
+	public static boolean exists(String url) throws IOException {
+		final List<Candidate> candidates = MirrorSelector.getCandidates(url);
+
+		for (int index = 0; index < candidates.size(); index++) {
+			final Candidate candidate = candidates.get(index);
+			try {
+				if (candidate.isFile() ? Files.isRegularFile(getPath(candidate)) : isSuccessful(send(CLIENT, createRequest(candidate.url()).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(), BodyHandlers.discarding()).statusCode())) {
+					return true;
+				}
+			} catch (final IOException ex) {
+				if (index == candidates.size() - 1) {
+					throw ex;
+				}
+				Main.LOGGER.debug("Could not check if {} exists", candidate.url(), ex);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Send the request to every candidate until one succeeds. If all fail, the failure of the last candidate is thrown
+	 * with the others added as suppressed.
+	 */
+	private static <T> T requestCandidates(List<Candidate> candidates, CandidateRequest<T> request) throws IOException {
+		IOException failure = null;
+
+		for (final Candidate candidate : candidates) {
+			try {
+				return request.run(candidate);
+			} catch (final IOException ex) {
+				if (failure != null) {
+					ex.addSuppressed(failure);
+				}
+				failure = ex;
+				// A cancelled request says nothing about the mirror
+				if (offline || Thread.currentThread().isInterrupted()) {
+					break;
+				}
+				candidate.recordFailure();
+				if (candidates.size() > 1) {
+					Main.LOGGER.debug("Request to mirror {} failed", candidate.url(), ex);
+				}
+			}
+		}
+
+		throw failure;
+	}
+
+	private static Path getPath(Candidate candidate) throws IOException {
+		try {
+			return Path.of(URI.create(candidate.url()));
+		} catch (final IllegalArgumentException | FileSystemNotFoundException ex) {
+			throw new IOException("Invalid file url " + candidate.url(), ex);
+		}
+	}
+
+	private static InputStream measure(Candidate candidate, InputStream inputStream) {
+		return candidate.mirror() == null ? inputStream : new MeasuringInputStream(inputStream, candidate);
+	}
+
+	private static HttpRequest.Builder createRequest(String url) throws IOException {
+		if (offline) {
+			throw new IOException("Cannot request " + url + " in offline mode");
+		}
+		try {
+			return HttpRequest.newBuilder(URI.create(url)) //
+					.timeout(REQUEST_TIMEOUT) //
+					.header("User-Agent", Constants.NAME + "/" + Constants.VERSION);
+		} catch (final IllegalArgumentException ex) {
+			throw new IOException("Invalid url " + url, ex);
+		}
+	}
+
+	private static HttpClient createClient() {
+		return HttpClient.newBuilder() //
+				.version(Version.HTTP_2) //
+				.followRedirects(Redirect.NORMAL) //
+				.connectTimeout(CONNECT_TIMEOUT) //
+				.build();
+	}
+
+	/**
+	 * Send the request and report the outcome to the adaptive concurrency limit of the host. A response that is not a
+	 * transient error closes the {@link CircuitBreaker} of the host, so only requests that reached the host reset it.
+	 */
+	private static <T> HttpResponse<T> send(HttpClient client, HttpRequest request, BodyHandler<T> bodyHandler) throws IOException {
+		final AimdLimit hostLimit = getHostLimit(request.uri());
+		final long start = System.nanoTime();
+		try {
+			final HttpResponse<T> response = client.send(request, bodyHandler);
+			hostLimit.onResponse(response.statusCode(), System.nanoTime() - start);
+			if (!HttpStatusException.isTransient(response.statusCode())) {
+				CircuitBreaker.forHost(getHost(request.uri())).recordSuccess();
+			}
+			return response;
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+		} catch (final IOException ex) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw ex;
+			}
+			hostLimit.onFailure();
+			throw new NetworkException("Request to " + request.uri() + " failed", ex);
+		}
+	}
+
+	/**
+	 * Acquire a slot of the host and then a global slot. Transfers that wait for a saturated host must not hold global
+	 * slots, otherwise they block the downloads from other hosts.
+	 */
+	private static Runnable acquireSlot(URI uri, DownloadPriority priority) throws IOException {
+		final ConcurrencyLimiter hostLimiter = getHostLimit(uri).getLimiter();
+
+		hostLimiter.acquire(priority);
+		try {
+			GLOBAL_LIMITER.acquire(priority);
+		} catch (final IOException ex) {
+			hostLimiter.release();
+			throw ex;
+		}
+
+		return () -> {
+			GLOBAL_LIMITER.release();
+			hostLimiter.release();
+		};
+	}
+
+	private static AimdLimit getHostLimit(URI uri) {
+		return HOST_LIMITS.computeIfAbsent(getHost(uri), host -> new AimdLimit(host, maxDownloadsPerHost, GLOBAL_LIMITER.getLimit()));
+	}
+
+	static String getHost(URI uri) {
+		return uri.getHost() == null ? "" : uri.getHost();
+	}
+
+	private static long parseRangeStart(HttpResponse<?> response, long requestedOffset) {
+		// Content-Range: bytes <start>-<end>/<size>
+		return response.headers().firstValue("Content-Range").map(value -> {
+			final int start = value.indexOf(' ');
+			final int end = value.indexOf('-');
+			if (start < 0 || end < start) {
+				return -1L;
+			}
+			try {
+				return Long.parseLong(value.substring(start + 1, end).trim());
+			} catch (final NumberFormatException ex) {
+				return -1L;
+			}
+		}).orElse(requestedOffset);
+	}
+
+	/**
+	 * Parse the Retry-After header which is either a number of seconds or a http date
+	 */
+	private static Duration parseRetryAfter(HttpResponse<?> response) {
+		return response.headers().firstValue("Retry-After").map(String::trim).map(value -> {
+			try {
+				return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+			} catch (final NumberFormatException ex) {
+				// Not a number of seconds
+			}
+			try {
+				final Duration delay = Duration.between(Instant.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+				return delay.isNegative() ? Duration.ZERO : delay;
+			} catch (final DateTimeParseException ex) {
+				return null;
+			}
+		}).orElse(null);
+	}
+
+	private static boolean isSuccessful(int statusCode) {
+		return statusCode >= 200 && statusCode < 300;
+	}
+
+	private static class ReleasingInputStream extends FilterInputStream {
+
+		private final AtomicBoolean released = new AtomicBoolean();
+		private final Runnable releaser;
+
+		private ReleasingInputStream(InputStream inputStream, Runnable releaser) {
+			super(inputStream);
+			this.releaser = releaser;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (released.compareAndSet(false, true)) {
+					releaser.run();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Aborts the response body if a read blocks longer than the read timeout. Only the time spent waiting for the server
+	 * counts, not the time the caller spends between reads. Failed reads are reported as {@link NetworkException}.
+	 */
+	private static class IdleTimeoutInputStream extends FilterInputStream {
+
+		private final String url;
+
+		private volatile long readStart;
+		private volatile boolean timedOut;
+
+		private IdleTimeoutInputStream(InputStream inputStream, String url) {
+			super(inputStream);
+			this.url = url;
+		}
+
+		@Override
+		public int read() throws IOException {
+			beginRead();
+			try {
+				return super.read();
+			} catch (final IOException ex) {
+				throw readFailed(ex);
+			} finally {
+				endRead();
+			}
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			beginRead();
+			try {
+				return super.read(buffer, offset, length);
+			} catch (final IOException ex) {
+				throw readFailed(ex);
+			} finally {
+				endRead();
+			}
+		}
+
+		@Override
+		public long skip(long length) throws IOException {
+			beginRead();
+			try {
+				return super.skip(length);
+			} catch (final IOException ex) {
+				throw readFailed(ex);
+			} finally {
+				endRead();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			READING.remove(this);
+			super.close();
+		}
+
+		private void beginRead() throws IOException {
+			checkTimedOut();
+			readStart = System.nanoTime();
+			READING.add(this);
+		}
+
+		private void endRead() throws IOException {
+			READING.remove(this);
+			readStart = 0;
+			checkTimedOut();
+		}
+
+		private void checkTimedOut() throws IOException {
+			if (timedOut) {
+				throw new NetworkException(getTimeoutMessage());
+			}
+		}
+
+		private IOException readFailed(IOException exception) {
+			if (timedOut) {
+				return new NetworkException(getTimeoutMessage(), exception);
+			}
+			if (exception instanceof InterruptedIOException || Thread.currentThread().isInterrupted()) {
+				return exception;
+			}
+			return new NetworkException("Could not read response of " + url, exception);
+		}
+
+		private String getTimeoutMessage() {
+			return "No data received from " + url + " for " + READ_TIMEOUT.toSeconds() + " seconds";
+		}
+
+		private void checkTimeout() {
+			final long start = readStart;
+			if (start == 0 || System.nanoTime() - start < READ_TIMEOUT.toNanos()) {
+				return;
+			}
+			timedOut = true;
+			READING.remove(this);
+			try {
+				// Closing the body unblocks the waiting read
+				in.close();
+			} catch (final IOException ex) {
+				Main.LOGGER.debug("Could not close stalled response of {}", url, ex);
+			}
+		}
+	}
+
+	private static class MeasuringInputStream extends FilterInputStream {
+
+		private final Candidate candidate;
+		private final long start = System.nanoTime();
+
+		private long bytes;
+		private boolean closed;
+
+		private MeasuringInputStream(InputStream inputStream, Candidate candidate) {
+			super(inputStream);
+			this.candidate = candidate;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int value = super.read();
+			if (value >= 0) {
+				bytes++;
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			final int read = super.read(buffer, offset, length);
+			if (read > 0) {
+				bytes += read;
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				candidate.recordTransfer(bytes, System.nanoTime() - start);
+			}
+			super.close();
+		}
+	}
+
+	/**
+	 * Channel of a local file that ends at the limit
+	 */
+	private static class RangeChannel implements ReadableByteChannel {
+
+		private final FileChannel channel;
+		private final long limit;
+
+		private RangeChannel(FileChannel channel, long limit) {
+			this.channel = channel;
+			this.limit = limit;
+		}
+
+		@Override
+		public int read(ByteBuffer buffer) throws IOException {
+			final long remaining = limit - channel.position();
+			if (remaining <= 0) {
+				return -1;
+			}
+			if (buffer.remaining() > remaining) {
+				final ByteBuffer slice = buffer.slice().limit((int) remaining);
+				final int read = channel.read(slice);
+				buffer.position(buffer.position() + Math.max(read, 0));
+				return read;
+			}
+			return channel.read(buffer);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	@FunctionalInterface
+	private interface CandidateRequest<T> {
+
+		T run(Candidate candidate) throws IOException;
+	}
+
+}
@@ -0,0 +1,44 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.util.Locale;
+
+/**
+ * Order in which waiting downloads get a download slot
+ */
+public enum DownloadOrder {
+
+	/**
+	 * Files on the critical path first: client, libraries, natives, asset index, java runtime and then the asset objects
+	 * with the largest first
+	 */
+	PRIORITY("priority"),
+	/**
+	 * Arrival order
+	 */
+	FIFO("fifo");
+
+	private final String name;
+
+	private DownloadOrder(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public static DownloadOrder fromString(String name) {
+		for (final DownloadOrder order : values()) {
+			if (order.name.equals(name.toLowerCase(Locale.ROOT))) {
+				return order;
+			}
+		}
+		throw new IllegalArgumentException("Unknown download order " + name);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,99 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.IOException;
+import java.util.Comparator;
+
+/**
+ * Priority of a download. Downloads with a lower level get a download slot first. Inside a level downloads with a lower
+ * order come first. The priority is attached to the current thread, so the {@link DownloadEngine} can pick it up.
+ */
+public record DownloadPriority(Level level, long order) implements Comparable<DownloadPriority> {
+
+	public static final DownloadPriority DEFAULT = of(Level.LIBRARY);
+
+	private static final Comparator<DownloadPriority> COMPARATOR = Comparator.comparing(DownloadPriority::level).thenComparingLong(DownloadPriority::order);
+
+	private static final ThreadLocal<DownloadPriority> CURRENT = ThreadLocal.withInitial(() -> DEFAULT);
+
+	private static volatile DownloadOrder downloadOrder = DownloadOrder.PRIORITY;
+
+	public static DownloadPriority of(Level level) {
+		return new DownloadPriority(level, 0);
+	}
+
+	/**
+	 * Large files are started first, so they do not end up as a long tail at the end of a phase
+	 */
+	public static DownloadPriority largestFirst(Level level, long size) {
+		return new DownloadPriority(level, -size);
+	}
+
+	public static void setOrder(DownloadOrder downloadOrder) {
+		DownloadPriority.downloadOrder = downloadOrder;
+	}
+
+	public static boolean isPriorityOrder() {
+		return downloadOrder == DownloadOrder.PRIORITY;
+	}
+
+	public static DownloadPriority current() {
+		return downloadOrder == DownloadOrder.FIFO ? DEFAULT : CURRENT.get();
+	}
+
+	/**
+	 * The priority attached to the current thread, even if downloads are started in arrival order. Used to hand the
+	 * priority to other threads and to find the phase of a download.
+	 */
+	public static DownloadPriority attached() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Run the action with the priority attached to the current thread
+	 */
+	public static void run(DownloadPriority priority, Runnable action) {
+		final DownloadPriority previous = CURRENT.get();
+		CURRENT.set(priority);
+		try {
+			action.run();
+		} finally {
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * Run the action with the priority attached to the current thread and return its result
+	 */
+	public static <T> T call(DownloadPriority priority, Action<T> action) throws IOException {
+		final DownloadPriority previous = CURRENT.get();
+		CURRENT.set(priority);
+		try {
+			return action.run();
+		} finally {
+			CURRENT.set(previous);
+		}
+	}
+
+	@Override
+	public int compareTo(DownloadPriority other) {
+		return COMPARATOR.compare(this, other);
+	}
+
+	@FunctionalInterface
+	public interface Action<T> {
+
+		T run() throws IOException;
+	}
+
+	public enum Level {
+		METADATA,
+		CLIENT,
+		LIBRARY,
+		NATIVE,
+		ASSET_INDEX,
+		RUNTIME,
+		PROFILED_ASSET,
+		ASSET;
+	}
+
+}
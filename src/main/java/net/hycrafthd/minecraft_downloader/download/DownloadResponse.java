@@ -0,0 +1,22 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Body of a download. The offset is the position in the remote file where the body starts. A response is partial if
+ * the server accepted a range request, otherwise it contains the whole file.
+ */
+public record DownloadResponse(InputStream inputStream, long offset, boolean partial) implements Closeable {
+
+	public boolean isPartial() {
+		return partial;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inputStream.close();
+	}
+
+}
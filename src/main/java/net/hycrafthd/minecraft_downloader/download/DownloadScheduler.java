@@ -0,0 +1,103 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import net.hycrafthd.minecraft_downloader.Main;
+
+/**
+ * Runs blocking download work on virtual threads. How many transfers really hit the network at the same time is
+ * limited by the {@link DownloadEngine}, so every item can get its own thread here. A failed item does not stop the
+ * other items. All failures are reported together when every item is finished.
+ */
+public class DownloadScheduler {
+
+	public static <T> void forEach(Collection<T> items, Consumer<T> action) {
+		final List<T> list = new ArrayList<>(items);
+		runAll(list.size(), index -> action.accept(list.get(index)));
+	}
+
+	/**
+	 * Run the action for every index from zero to the count, so callers with primitive tables do not need a collection
+	 */
+	public static void forEachIndex(int count, IntConsumer action) {
+		runAll(count, action);
+	}
+
+	/**
+	 * Run the action for every item with the priority of the item. Items are started in priority order.
+	 */
+	public static <T> void forEach(Collection<T> items, Function<T, DownloadPriority> priorityFunction, Consumer<T> action) {
+		final List<T> ordered = new ArrayList<>(items);
+		if (DownloadPriority.isPriorityOrder()) {
+			ordered.sort(Comparator.comparing(priorityFunction));
+		}
+		runAll(ordered.size(), index -> {
+			final T item = ordered.get(index);
+			DownloadPriority.run(priorityFunction.apply(item), () -> action.accept(item));
+		});
+	}
+
+	private static void runAll(int count, IntConsumer action) {
+		final List<Future<?>> futures = new ArrayList<>(count);
+
+		try (final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Downloader-", 0).factory())) {
+			for (int index = 0; index < count; index++) {
+				final int item = index;
+				futures.add(executor.submit(() -> action.accept(item)));
+			}
+		}
+
+		final List<RuntimeException> failures = new ArrayList<>();
+
+		for (final Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (final ExecutionException ex) {
+				failures.add(asRuntimeException(ex.getCause()));
+			} catch (final InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for downloads", ex);
+			}
+		}
+
+		if (failures.isEmpty()) {
+			return;
+		}
+
+		// Report every failed item together instead of only the first one
+		Main.LOGGER.error("{} of {} download tasks failed", failures.size(), count);
+		for (final RuntimeException failure : failures) {
+			Main.LOGGER.error("  {}", describe(failure));
+		}
+
+		final RuntimeException exception = failures.get(0);
+		failures.stream().skip(1).forEach(exception::addSuppressed);
+		throw exception;
+	}
+
+	private static String describe(Throwable throwable) {
+		final StringBuilder builder = new StringBuilder(String.valueOf(throwable.getMessage()));
+		for (Throwable cause = throwable.getCause(); cause != null; cause = cause.getCause()) {
+			builder.append(": ").append(cause.getMessage());
+		}
+		return builder.toString();
+	}
+
+	private static RuntimeException asRuntimeException(Throwable throwable) {
+		if (throwable instanceof RuntimeException runtimeException) {
+			return runtimeException;
+		}
+		return new IllegalStateException("Download task failed", throwable);
+	}
+
+}
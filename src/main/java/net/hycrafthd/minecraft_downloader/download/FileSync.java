@@ -0,0 +1,96 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.hycrafthd.minecraft_downloader.Main;
+
+/**
+ * Flushes written files to the disk according to the {@link FsyncPolicy}. Files are always written to a part file and
+ * moved into place, so a file that exists is complete. Flushing makes sure this also holds after a power loss.
+ */
+public class FileSync {
+
+	private static final Set<Path> PENDING = ConcurrentHashMap.newKeySet();
+
+	private static volatile FsyncPolicy policy = FsyncPolicy.NONE;
+
+	public static void setPolicy(FsyncPolicy policy) {
+		FileSync.policy = policy;
+	}
+
+	/**
+	 * Called with the part file before it is moved to its final location
+	 */
+	public static void beforeMove(File source) throws IOException {
+		if (policy == FsyncPolicy.ALWAYS) {
+			force(source.toPath(), false);
+		}
+	}
+
+	/**
+	 * Called with the final location after the part file was moved
+	 */
+	public static void afterMove(File target) throws IOException {
+		switch (policy) {
+		case ALWAYS -> forceDirectory(target.toPath().toAbsolutePath().getParent());
+		case BATCH -> PENDING.add(target.toPath().toAbsolutePath());
+		default -> {
+		}
+		}
+	}
+
+	/**
+	 * Flush all files that were written since the last flush when the batch policy is used
+	 */
+	public static void flush() {
+		if (PENDING.isEmpty()) {
+			return;
+		}
+
+		final Set<Path> directories = new HashSet<>();
+		int count = 0;
+
+		for (final Path path : PENDING) {
+			PENDING.remove(path);
+			try {
+				force(path, false);
+				count++;
+			} catch (final IOException ex) {
+				Main.LOGGER.warn("Could not flush file {}", path, ex);
+			}
+			if (path.getParent() != null) {
+				directories.add(path.getParent());
+			}
+		}
+
+		directories.forEach(FileSync::forceDirectory);
+
+		Main.LOGGER.debug("Flushed {} files in {} directories", count, directories.size());
+	}
+
+	private static void force(Path path, boolean directory) throws IOException {
+		try (final FileChannel channel = FileChannel.open(path, directory ? StandardOpenOption.READ : StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+	}
+
+	private static void forceDirectory(Path directory) {
+		if (directory == null) {
+			return;
+		}
+		try {
+			force(directory, true);
+		} catch (final IOException ex) {
+			// Not every platform can open directories, e.g. windows
+			Main.LOGGER.debug("Could not flush directory {}", directory, ex);
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.util.Locale;
+
+/**
+ * When written files are flushed to the disk before they are considered complete
+ */
+public enum FsyncPolicy {
+
+	/**
+	 * Leave flushing to the operating system
+	 */
+	NONE("none"),
+	/**
+	 * Flush all written files and their directories once at the end of the run
+	 */
+	BATCH("batch"),
+	/**
+	 * Flush every file before it is moved into place and its directory afterwards
+	 */
+	ALWAYS("always");
+
+	private final String name;
+
+	private FsyncPolicy(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public static FsyncPolicy fromString(String name) {
+		for (final FsyncPolicy policy : values()) {
+			if (policy.name.equals(name.toLowerCase(Locale.ROOT))) {
+				return policy;
+			}
+		}
+		throw new IllegalArgumentException("Unknown fsync policy " + name);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,347 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.util.FileUtil;
+
+/**
+ * Hedged transfers of small files. The transfer is streamed into the part file like any other download and is watched
+ * by a shared watchdog. If it takes longer than the configured percentile of the recent transfers or its throughput
+ * drops below the minimum, a second request is sent to another mirror or over a new connection. Only the hedged
+ * request is kept in memory. Whichever transfer finishes first is used and the other one is cancelled.
+ */
+public class Hedging {
+
+	public static final double DEFAULT_PERCENTILE = 95;
+	public static final long DEFAULT_MIN_THROUGHPUT = 64 * 1024;
+
+	/**
+	 * Files up to this size are hedged. The hedged request is kept in memory until it wins or is cancelled.
+	 */
+	public static final int MAX_SIZE = 1024 * 1024;
+
+	private static final int WINDOW_SIZE = 512;
+	private static final int MIN_SAMPLES = 32;
+	private static final long DEFAULT_DELAY = TimeUnit.SECONDS.toNanos(2);
+	private static final long MIN_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long THROUGHPUT_WINDOW = TimeUnit.SECONDS.toNanos(1);
+	private static final long CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private static final int RUNNING = 0;
+	private static final int PRIMARY_DONE = 1;
+	private static final int HEDGE_DONE = 2;
+
+	private static final long[] DURATIONS = new long[WINDOW_SIZE];
+	private static int durationCount;
+
+	private static final AtomicLong TRANSFERS = new AtomicLong();
+	private static final AtomicLong FIRED = new AtomicLong();
+	private static final AtomicLong WON = new AtomicLong();
+
+	// One watchdog checks all running transfers, so a transfer does not need its own thread until it is hedged
+	private static final Set<Transfer> ACTIVE = ConcurrentHashMap.newKeySet();
+	private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "Hedging Watchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		WATCHDOG.scheduleWithFixedDelay(() -> ACTIVE.forEach(Transfer::check), CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.NANOSECONDS);
+	}
+
+	private static volatile boolean enabled = true;
+	private static volatile double percentile = DEFAULT_PERCENTILE;
+	private static volatile long minThroughput = DEFAULT_MIN_THROUGHPUT;
+
+	/**
+	 * @param enabled If small transfers are hedged
+	 * @param percentile Percentile of the recent transfer durations after which a hedge is sent
+	 * @param minThroughput Bytes per second below which a hedge is sent
+	 */
+	public static void configure(boolean enabled, double percentile, long minThroughput) {
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Hedge percentile must be greater than 0 and at most 100");
+		}
+		Hedging.enabled = enabled;
+		Hedging.percentile = percentile;
+		Hedging.minThroughput = minThroughput;
+	}
+
+	public static boolean isHedgeable(Integer size) {
+		return enabled && size != null && size >= 0 && size <= MAX_SIZE;
+	}
+
+	/**
+	 * Download the url into the part file, hedging the request if it is slow. The transfer resumes at the offset if the
+	 * server supports it.
+	 *
+	 * @param url Url of the file
+	 * @param partFile Part file that contains the first offset bytes of the file
+	 * @param offset Number of bytes that are already downloaded
+	 * @param digest Digest that contains the first offset bytes and is updated with the rest of the file
+	 */
+	public static void download(String url, File partFile, long offset, MessageDigest digest) throws IOException {
+		TRANSFERS.incrementAndGet();
+
+		final Transfer transfer = new Transfer(url, offset, getDelay());
+		ACTIVE.add(transfer);
+
+		try {
+			try {
+				transfer.runPrimary(partFile, digest);
+			} catch (final IOException ex) {
+				// A failed primary can still be saved by a running hedge
+				if (!transfer.awaitHedge()) {
+					throw ex;
+				}
+			}
+
+			if (transfer.state.get() == HEDGE_DONE) {
+				if (!transfer.isHedgeUsable()) {
+					// The primary transfer was cancelled, the retry resumes from what it wrote
+					throw new NetworkException("Hedged request for " + url + " started at byte " + transfer.hedgeOffset + ", but the primary transfer restarted from the beginning");
+				}
+				WON.incrementAndGet();
+				Main.LOGGER.debug("Hedged request for {} finished first", url);
+				transfer.applyHedge(partFile, digest);
+				recordDuration(transfer.hedgeEnd - transfer.hedgeStart);
+			} else {
+				recordDuration(System.nanoTime() - transfer.start);
+			}
+		} finally {
+			ACTIVE.remove(transfer);
+			transfer.cancelHedge();
+		}
+	}
+
+	public static void logStatistics() {
+		final long transfers = TRANSFERS.get();
+		if (transfers > 0) {
+			Main.LOGGER.info("Hedged {} of {} small transfers, {} hedged requests finished first", FIRED.get(), transfers, WON.get());
+		}
+	}
+
+	private static synchronized void recordDuration(long nanos) {
+		DURATIONS[durationCount % WINDOW_SIZE] = nanos;
+		durationCount++;
+	}
+
+	private static synchronized long getDelay() {
+		if (durationCount < MIN_SAMPLES) {
+			return DEFAULT_DELAY;
+		}
+		final long[] sorted = Arrays.copyOf(DURATIONS, Math.min(durationCount, WINDOW_SIZE));
+		Arrays.sort(sorted);
+		final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return Math.max(MIN_DELAY, sorted[Math.max(0, index)]);
+	}
+
+	/**
+	 * A watched transfer. The primary request runs on the calling thread, the hedged request on its own virtual thread
+	 * with the priority of the caller.
+	 */
+	private static class Transfer {
+
+		private final String url;
+		private final long offset;
+		private final long delay;
+		private final DownloadPriority priority = DownloadPriority.attached();
+		private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+		private volatile long start;
+		private volatile long bytes;
+		private volatile InputStream primary;
+		private volatile boolean primaryRestarted;
+
+		private volatile Thread hedge;
+		private volatile long hedgeStart;
+		private volatile long hedgeEnd;
+		private byte[] hedgeData;
+		private volatile long hedgeOffset;
+
+		private Transfer(String url, long offset, long delay) {
+			this.url = url;
+			this.offset = offset;
+			this.delay = delay;
+		}
+
+		private void runPrimary(File partFile, MessageDigest digest) throws IOException {
+			try (final DownloadResponse response = DownloadEngine.open(url, offset, -1, false, () -> start = System.nanoTime())) {
+				long position = offset;
+				if (offset > 0 && !response.isPartial()) {
+					Main.LOGGER.debug("Server does not support resuming the download of {}. Start from the beginning", url);
+					position = 0;
+					digest.reset();
+				}
+
+				primary = response.inputStream();
+				// The hedge might have finished before the stream was published
+				if (state.get() == HEDGE_DONE) {
+					return;
+				}
+				// Set before the part file is truncated, so a hedge that starts after the truncated bytes is not used
+				primaryRestarted = position == 0 && offset > 0;
+
+				try (final InputStream inputStream = new CountingInputStream(primary); //
+						final FileChannel fileChannel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, position > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+					FileUtil.transfer(inputStream, fileChannel, digest);
+				}
+			}
+
+			// A stream that is closed by a finished hedge can look like a normal end of the file
+			state.compareAndSet(RUNNING, PRIMARY_DONE);
+		}
+
+		/**
+		 * Called by the watchdog
+		 */
+		private void check() {
+			if (hedge == null && state.get() == RUNNING && isSlow()) {
+				FIRED.incrementAndGet();
+				Main.LOGGER.debug("Transfer of {} is slow after {} ms. Send hedged request", url, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				hedge = Thread.ofVirtual().name("Hedged Download").start(() -> DownloadPriority.run(priority, this::runHedge));
+			}
+		}
+
+		private void runHedge() {
+			if (state.get() != RUNNING) {
+				return;
+			}
+			try (final DownloadResponse response = DownloadEngine.open(url, offset, -1, true, () -> hedgeStart = System.nanoTime())) {
+				final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+				response.inputStream().transferTo(outputStream);
+				hedgeData = outputStream.toByteArray();
+				hedgeOffset = response.isPartial() ? offset : 0;
+				hedgeEnd = System.nanoTime();
+			} catch (final IOException | RuntimeException ex) {
+				Main.LOGGER.debug("Hedged request for {} failed", url, ex);
+				return;
+			}
+
+			if (!isHedgeUsable()) {
+				Main.LOGGER.debug("Discard hedged request for {}, because it does not match the restarted primary transfer", url);
+				return;
+			}
+
+			if (state.compareAndSet(RUNNING, HEDGE_DONE)) {
+				// Unblock the primary transfer
+				final InputStream primary = this.primary;
+				if (primary != null) {
+					try {
+						primary.close();
+					} catch (final IOException ex) {
+						Main.LOGGER.debug("Could not close the primary transfer of {}", url, ex);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Wait for a running hedge after the primary transfer failed
+		 *
+		 * @return True if the hedge finished successfully
+		 */
+		private boolean awaitHedge() throws InterruptedIOException {
+			// Stop the watchdog from starting a hedge now
+			ACTIVE.remove(this);
+			final Thread hedge = this.hedge;
+			if (hedge != null && state.get() == RUNNING) {
+				try {
+					hedge.join();
+				} catch (final InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while downloading " + url);
+				}
+			}
+			return state.get() == HEDGE_DONE;
+		}
+
+		/**
+		 * The hedged data can only be used if the part file still holds the bytes before it. A primary transfer that
+		 * restarted from the beginning truncated them.
+		 */
+		private boolean isHedgeUsable() {
+			return hedgeOffset == 0 || hedgeOffset == offset && !primaryRestarted;
+		}
+
+		private void applyHedge(File partFile, MessageDigest digest) throws IOException {
+			try (final FileChannel fileChannel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				fileChannel.truncate(hedgeOffset);
+				final ByteBuffer buffer = ByteBuffer.wrap(hedgeData);
+				while (buffer.hasRemaining()) {
+					fileChannel.write(buffer, hedgeOffset + buffer.position());
+				}
+			}
+			// The primary transfer already updated the digest, so it is rebuilt from the part file
+			digest.reset();
+			FileUtil.updateDigest(digest, partFile);
+		}
+
+		private void cancelHedge() {
+			final Thread hedge = this.hedge;
+			if (hedge != null && hedge.isAlive()) {
+				hedge.interrupt();
+			}
+		}
+
+		/**
+		 * The time waiting for a download slot is not counted
+		 */
+		private boolean isSlow() {
+			final long start = this.start;
+			if (start == 0) {
+				return false;
+			}
+			final long elapsed = System.nanoTime() - start;
+			if (elapsed > delay) {
+				return true;
+			}
+			return elapsed > THROUGHPUT_WINDOW && bytes * (double) TimeUnit.SECONDS.toNanos(1) / elapsed < minThroughput;
+		}
+
+		private class CountingInputStream extends FilterInputStream {
+
+			private CountingInputStream(InputStream inputStream) {
+				super(inputStream);
+			}
+
+			@Override
+			public int read() throws IOException {
+				final int value = super.read();
+				if (value >= 0) {
+					bytes++;
+				}
+				return value;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				final int read = super.read(buffer, offset, length);
+				if (read > 0) {
+					bytes += read;
+				}
+				return read;
+			}
+		}
+	}
+
+}
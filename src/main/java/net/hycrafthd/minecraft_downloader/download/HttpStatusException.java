@@ -0,0 +1,44 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown if a server answers with an http status that is not successful
+ */
+public class HttpStatusException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int statusCode;
+	private final transient Duration retryAfter;
+
+	public HttpStatusException(String url, int statusCode, Duration retryAfter) {
+		super("Server returned http status " + statusCode + " for " + url);
+		this.statusCode = statusCode;
+		this.retryAfter = retryAfter;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return The delay the server asked for with the Retry-After header or null if there was none
+	 */
+	public Duration getRetryAfter() {
+		return retryAfter;
+	}
+
+	/**
+	 * @return If the request can succeed when it is sent again later
+	 */
+	public boolean isTransient() {
+		return isTransient(statusCode);
+	}
+
+	public static boolean isTransient(int statusCode) {
+		return statusCode == 408 || statusCode == 425 || statusCode == 429 || statusCode >= 500;
+	}
+
+}
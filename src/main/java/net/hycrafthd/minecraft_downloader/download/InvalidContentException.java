@@ -0,0 +1,21 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a transferred file does not match its SHA-1 or cannot be parsed. The transfer is retried by the
+ * {@link RetryPolicy}, but it does not count against the host.
+ */
+public class InvalidContentException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidContentException(String message) {
+		super(message);
+	}
+
+	public InvalidContentException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
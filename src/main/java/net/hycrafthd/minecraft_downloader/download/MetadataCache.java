@@ -0,0 +1,172 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.gson.JsonParseException;
+
+import net.hycrafthd.minecraft_downloader.Constants;
+import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.util.FileUtil;
+
+/**
+ * On disk cache for metadata documents like the version manifests and the mod loader apis. Fresh entries are returned
+ * without a request. Entries older than the ttl are returned immediately while they are revalidated in the background,
+ * as long as they are inside the stale window. Older entries are revalidated with a conditional request first.
+ */
+public class MetadataCache {
+
+	public static final String DIRECTORY_NAME = "metadata_cache";
+
+	public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+	public static final Duration DEFAULT_STALE_TTL = Duration.ofDays(1);
+
+	private static final String BODY_EXTENSION = ".body";
+	private static final String META_EXTENSION = ".meta.json";
+
+	private static final Map<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+	private static final Set<String> REVALIDATING = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	private static volatile File directory;
+	private static volatile Duration ttl = DEFAULT_TTL;
+	private static volatile Duration staleTtl = DEFAULT_STALE_TTL;
+
+	public static void configure(File directory, Duration ttl, Duration staleTtl) {
+		FileUtil.createFolders(directory);
+		MetadataCache.directory = directory;
+		MetadataCache.ttl = ttl;
+		MetadataCache.staleTtl = staleTtl;
+	}
+
+	public static String get(String url) throws IOException {
+		return get(url, false);
+	}
+
+	/**
+	 * Get the document of the url
+	 *
+	 * @param url Url of the document
+	 * @param forceRevalidate If a cached copy must be revalidated with the server before it is returned
+	 * @return The document
+	 */
+	public static String get(String url, boolean forceRevalidate) throws IOException {
+		final File cacheDirectory = directory;
+		if (cacheDirectory == null) {
+			return DownloadEngine.fetchMetadata(url, null, null).body();
+		}
+
+		final String key = FileUtil.bytesToHex(FileUtil.createSha1Digest().digest(url.getBytes(StandardCharsets.UTF_8)));
+		final File bodyFile = new File(cacheDirectory, key + BODY_EXTENSION);
+		final File metaFile = new File(cacheDirectory, key + META_EXTENSION);
+
+		final CacheEntry entry = readEntry(metaFile);
+
+		if (DownloadEngine.isOffline()) {
+			if (entry == null || !bodyFile.isFile()) {
+				throw new IOException("Metadata " + url + " is not cached and cannot be downloaded in offline mode");
+			}
+			Main.LOGGER.debug("Use cached metadata {} in offline mode", url);
+			return FileUtil.readText(bodyFile);
+		}
+
+		if (entry == null || !bodyFile.isFile()) {
+			Main.LOGGER.debug("Metadata {} is not cached", url);
+			return revalidate(url, null, bodyFile, metaFile);
+		}
+
+		final Duration age = Duration.ofMillis(Math.max(0, System.currentTimeMillis() - entry.fetched()));
+
+		if (!forceRevalidate) {
+			if (age.compareTo(ttl) <= 0) {
+				Main.LOGGER.debug("Use cached metadata {}", url);
+				return FileUtil.readText(bodyFile);
+			}
+
+			if (age.compareTo(ttl.plus(staleTtl)) <= 0) {
+				Main.LOGGER.debug("Use stale metadata {} and revalidate it in the background", url);
+				revalidateInBackground(url, entry, bodyFile, metaFile);
+				return FileUtil.readText(bodyFile);
+			}
+		}
+
+		try {
+			return revalidate(url, entry, bodyFile, metaFile);
+		} catch (final IOException ex) {
+			Main.LOGGER.warn("Could not revalidate metadata {}. Use cached copy from {} ago", url, age, ex);
+			return FileUtil.readText(bodyFile);
+		}
+	}
+
+	private static void revalidateInBackground(String url, CacheEntry entry, File bodyFile, File metaFile) {
+		if (!REVALIDATING.add(url)) {
+			return;
+		}
+
+		Thread.ofVirtual().name("Metadata Revalidation").start(() -> {
+			try {
+				revalidate(url, entry, bodyFile, metaFile);
+			} catch (final IOException | RuntimeException ex) {
+				Main.LOGGER.debug("Background revalidation of metadata {} failed", url, ex);
+			} finally {
+				REVALIDATING.remove(url);
+			}
+		});
+	}
+
+	/**
+	 * Only one request per url is sent at a time. A lock is used instead of synchronized, because the request is sent
+	 * while it is held and the callers can be virtual threads.
+	 */
+	private static String revalidate(String url, CacheEntry entry, File bodyFile, File metaFile) throws IOException {
+		final ReentrantLock lock = LOCKS.computeIfAbsent(url, unused -> new ReentrantLock());
+		lock.lock();
+		try {
+			return revalidateLocked(url, entry, bodyFile, metaFile);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static String revalidateLocked(String url, CacheEntry entry, File bodyFile, File metaFile) throws IOException {
+		final MetadataResponse response = DownloadEngine.fetchMetadata(url, entry == null ? null : entry.etag(), entry == null ? null : entry.lastModified());
+		final long now = System.currentTimeMillis();
+
+		if (response.notModified()) {
+			Main.LOGGER.debug("Metadata {} was not modified", url);
+			writeEntry(metaFile, new CacheEntry(url, entry.etag(), entry.lastModified(), now));
+			return FileUtil.readText(bodyFile);
+		}
+
+		FileUtil.writeText(response.body(), bodyFile);
+		writeEntry(metaFile, new CacheEntry(url, response.etag(), response.lastModified(), now));
+
+		return response.body();
+	}
+
+	private static CacheEntry readEntry(File metaFile) {
+		if (!metaFile.isFile()) {
+			return null;
+		}
+		try {
+			return Constants.GSON.fromJson(FileUtil.readText(metaFile), CacheEntry.class);
+		} catch (final IOException | JsonParseException ex) {
+			Main.LOGGER.debug("Could not read metadata cache entry {}", metaFile, ex);
+			return null;
+		}
+	}
+
+	private static void writeEntry(File metaFile, CacheEntry entry) throws IOException {
+		FileUtil.writeText(Constants.GSON.toJson(entry), metaFile);
+	}
+
+	private record CacheEntry(String url, String etag, String lastModified, long fetched) {
+	}
+
+}
@@ -0,0 +1,8 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+/**
+ * Result of a metadata request. If the document was not modified, the body is null and the validators of the request
+ * are returned.
+ */
+public record MetadataResponse(boolean notModified, String body, String etag, String lastModified) {
+}
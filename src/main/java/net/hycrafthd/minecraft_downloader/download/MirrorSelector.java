@@ -0,0 +1,193 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import net.hycrafthd.minecraft_downloader.Constants;
+import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.util.FileUtil;
+
+/**
+ * Maps origin hosts to mirrors. The mirror file is a json object with the origin host as key and a list of mirror base
+ * urls as value, for example {@code {"libraries.minecraft.net": ["http://mirror.lan/libraries"]}}. The path of the
+ * requested url is appended to the base url. Base urls with the file scheme read from a local directory. The origin
+ * itself is always tried last unless it is listed explicitly.
+ * <p>
+ * Mirrors are ranked by the measured latency and throughput of their responses. A mirror that failed is moved to the
+ * end for a while. Now and then the second best mirror is tried first, so the measurements stay up to date.
+ */
+public class MirrorSelector {
+
+	private static final double SMOOTHING = 0.3;
+	private static final long REFERENCE_SIZE = 1024 * 1024;
+	private static final long MIN_MEASURED_SIZE = 256 * 1024;
+	private static final long FAILURE_PENALTY = TimeUnit.SECONDS.toNanos(30);
+	private static final int EXPLORATION_RATE = 16;
+
+	private static volatile Map<String, List<Mirror>> mirrors = Map.of();
+
+	/**
+	 * Load the mirror file
+	 */
+	public static void load(File file) throws IOException {
+		final Map<String, List<String>> configuration;
+		try {
+			configuration = Constants.GSON.fromJson(FileUtil.readText(file), new TypeToken<Map<String, List<String>>>() {
+			}.getType());
+		} catch (final JsonParseException ex) {
+			throw new IOException("Invalid mirror file " + file, ex);
+		}
+
+		final Map<String, List<Mirror>> loaded = new HashMap<>();
+
+		if (configuration != null) {
+			configuration.forEach((host, baseUrls) -> {
+				final List<Mirror> hostMirrors = new ArrayList<>();
+				for (final String baseUrl : baseUrls) {
+					hostMirrors.add(new Mirror(stripTrailingSlash(baseUrl)));
+				}
+				loaded.put(host, List.copyOf(hostMirrors));
+				Main.LOGGER.info("Use mirrors {} for host {}", baseUrls, host);
+			});
+		}
+
+		mirrors = Map.copyOf(loaded);
+	}
+
+	/**
+	 * Get the urls to try for the url, best mirror first
+	 */
+	public static List<Candidate> getCandidates(String url) {
+		final URI uri;
+		try {
+			uri = URI.create(url);
+		} catch (final IllegalArgumentException ex) {
+			return List.of(new Candidate(url, null));
+		}
+
+		final List<Mirror> hostMirrors = mirrors.get(DownloadEngine.getHost(uri));
+		if (hostMirrors == null) {
+			return List.of(new Candidate(url, null));
+		}
+
+		final String origin = uri.getScheme() + "://" + uri.getRawAuthority();
+		final String path = (uri.getRawPath() == null ? "" : uri.getRawPath()) + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+
+		// Take a snapshot of the scores, because other threads update the measurements while sorting
+		final long now = System.nanoTime();
+		final Map<Mirror, Double> scores = new HashMap<>();
+		hostMirrors.forEach(mirror -> scores.put(mirror, mirror.getScore(now)));
+
+		final List<Mirror> ranked = new ArrayList<>(hostMirrors);
+		ranked.sort(Comparator.comparing(scores::get));
+
+		if (ranked.size() > 1 && ThreadLocalRandom.current().nextInt(EXPLORATION_RATE) == 0 && !ranked.get(1).isFailing(now)) {
+			ranked.add(0, ranked.remove(1));
+		}
+
+		final List<Candidate> candidates = new ArrayList<>(ranked.size() + 1);
+		boolean containsOrigin = false;
+		for (final Mirror mirror : ranked) {
+			candidates.add(new Candidate(mirror.baseUrl + path, mirror));
+			containsOrigin |= mirror.baseUrl.equals(origin);
+		}
+		if (!containsOrigin) {
+			candidates.add(new Candidate(url, null));
+		}
+		return candidates;
+	}
+
+	private static String stripTrailingSlash(String url) {
+		return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+	}
+
+	/**
+	 * Url that is tried for a request together with the mirror it belongs to. The mirror is null for the origin of a host
+	 * without mirrors.
+	 */
+	public record Candidate(String url, Mirror mirror) {
+
+		public boolean isFile() {
+			return url.startsWith("file:");
+		}
+
+		public void recordLatency(long nanos) {
+			if (mirror != null) {
+				mirror.recordLatency(nanos);
+			}
+		}
+
+		public void recordTransfer(long bytes, long nanos) {
+			if (mirror != null && bytes >= MIN_MEASURED_SIZE && nanos > 0) {
+				mirror.recordThroughput(bytes * (double) TimeUnit.SECONDS.toNanos(1) / nanos);
+			}
+		}
+
+		public void recordFailure() {
+			if (mirror != null) {
+				mirror.recordFailure();
+			}
+		}
+	}
+
+	public static class Mirror {
+
+		private final String baseUrl;
+
+		private double latency = -1;
+		private double throughput = -1;
+		private long failedUntil;
+		private boolean failed;
+
+		private Mirror(String baseUrl) {
+			this.baseUrl = baseUrl;
+		}
+
+		private synchronized void recordLatency(long nanos) {
+			latency = latency < 0 ? nanos : latency + SMOOTHING * (nanos - latency);
+			failed = false;
+		}
+
+		private synchronized void recordThroughput(double bytesPerSecond) {
+			throughput = throughput < 0 ? bytesPerSecond : throughput + SMOOTHING * (bytesPerSecond - throughput);
+		}
+
+		private synchronized void recordFailure() {
+			failed = true;
+			failedUntil = System.nanoTime() + FAILURE_PENALTY;
+		}
+
+		private synchronized boolean isFailing(long now) {
+			return failed && failedUntil - now > 0;
+		}
+
+		/**
+		 * Expected nanoseconds to fetch a file of the reference size. Mirrors without measurements are tried first.
+		 */
+		private synchronized double getScore(long now) {
+			if (isFailing(now)) {
+				return Double.MAX_VALUE;
+			}
+			final double latencyScore = Math.max(latency, 0);
+			final double transferScore = throughput > 0 ? REFERENCE_SIZE * (double) TimeUnit.SECONDS.toNanos(1) / throughput : 0;
+			return latencyScore + transferScore;
+		}
+
+		@Override
+		public String toString() {
+			return baseUrl;
+		}
+	}
+
+}
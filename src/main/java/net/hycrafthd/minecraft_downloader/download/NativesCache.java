@@ -0,0 +1,159 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.util.FileUtil;
+
+/**
+ * Shared cache of extracted native jars. Every native jar is extracted once per SHA-1 and exclusion set. The natives
+ * directories of the versions only link to the extracted files. A jar is extracted into a temporary directory that is
+ * moved into place, and a marker file next to it is written afterwards. Directories without a marker are incomplete
+ * and extracted again.
+ */
+public class NativesCache {
+
+	public static final String DIRECTORY_NAME = "natives_cache";
+
+	private static final String COMPLETE_FILE_EXTENSION = ".complete";
+
+	private static volatile File directory;
+
+	public static void setDirectory(File directory) {
+		FileUtil.createFolders(directory);
+		NativesCache.directory = directory;
+	}
+
+	/**
+	 * Get the directory with the extracted files of a native jar. The jar is extracted into the cache first if needed.
+	 *
+	 * @param jar Native jar
+	 * @param sha1 SHA-1 of the jar or null if unknown
+	 * @param exclusions Entry prefixes that are not extracted
+	 * @return Directory with the extracted files
+	 */
+	public static File extract(File jar, String sha1, List<String> exclusions) throws IOException {
+		final File cacheDirectory = directory;
+		if (cacheDirectory == null) {
+			throw new IllegalStateException("Natives cache directory is not set");
+		}
+
+		final String key = getKey(jar, sha1, exclusions);
+		final File extracted = new File(cacheDirectory, key);
+		final File marker = new File(cacheDirectory, key + COMPLETE_FILE_EXTENSION);
+
+		if (marker.isFile() && extracted.isDirectory()) {
+			Main.LOGGER.debug("Use cached natives {} for {}", extracted, jar);
+			return extracted;
+		}
+
+		SingleFlight.run(extracted, () -> {
+			if (marker.isFile() && extracted.isDirectory()) {
+				return;
+			}
+
+			if (extracted.exists()) {
+				Main.LOGGER.info("Cached natives {} are incomplete. Extract them again", extracted);
+				marker.delete();
+				deleteDirectory(extracted);
+			}
+
+			// Extract into a temporary directory, so a directory in the cache is always complete
+			final File partDirectory = new File(cacheDirectory, key + "." + UUID.randomUUID() + FileUtil.PART_FILE_EXTENSION);
+
+			try {
+				final int count = extractJar(jar, exclusions, partDirectory);
+				moveDirectory(partDirectory, extracted);
+				Files.writeString(marker.toPath(), jar.getName(), StandardCharsets.UTF_8);
+				Main.LOGGER.debug("Extracted {} entries of {} to natives cache {}", count, jar, extracted);
+			} finally {
+				deleteDirectory(partDirectory);
+			}
+		});
+
+		return extracted;
+	}
+
+	private static int extractJar(File jar, List<String> exclusions, File outputDirectory) throws IOException {
+		FileUtil.createFolders(outputDirectory);
+
+		try (final JarFile jarFile = new JarFile(jar)) {
+			final List<JarEntry> entries = jarFile.stream() //
+					.filter(jarEntry -> !jarEntry.isDirectory()) //
+					.filter(jarEntry -> exclusions.stream().noneMatch(exclusion -> jarEntry.getName().startsWith(exclusion))) //
+					.toList();
+
+			DownloadScheduler.forEach(entries, jarEntry -> {
+				final File file = new File(outputDirectory, jarEntry.getName());
+
+				try (final InputStream inputStream = jarFile.getInputStream(jarEntry)) {
+					FileUtil.writeFile(file, outputStream -> FileUtil.copy(inputStream, outputStream, new byte[8192]));
+				} catch (final IOException ex) {
+					throw new IllegalStateException("Could not extract jar entry " + jarEntry.getName(), ex);
+				}
+
+				file.setLastModified(jarEntry.getLastModifiedTime().toMillis());
+			});
+
+			return entries.size();
+		}
+	}
+
+	private static String getKey(File jar, String sha1, List<String> exclusions) throws IOException {
+		final String hash;
+		if (sha1 != null) {
+			hash = sha1;
+		} else {
+			final MessageDigest digest = FileUtil.createSha1Digest();
+			FileUtil.updateDigest(digest, jar);
+			hash = FileUtil.bytesToHex(digest.digest());
+		}
+
+		if (exclusions.isEmpty()) {
+			return hash;
+		}
+
+		final String exclusionString = String.join("\n", exclusions.stream().sorted().toList());
+		final String exclusionHash = FileUtil.bytesToHex(FileUtil.createSha1Digest().digest(exclusionString.getBytes(StandardCharsets.UTF_8)));
+		return hash + "-" + exclusionHash.substring(0, 8);
+	}
+
+	private static void moveDirectory(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (final AtomicMoveNotSupportedException ex) {
+			Files.move(source.toPath(), target.toPath());
+		} catch (final FileAlreadyExistsException | DirectoryNotEmptyException ex) {
+			// Another process extracted the same jar at the same time
+			Main.LOGGER.debug("Natives {} were already extracted by another process", target);
+		}
+	}
+
+	private static void deleteDirectory(File directory) throws IOException {
+		if (!directory.exists()) {
+			return;
+		}
+		try (final Stream<Path> paths = Files.walk(directory.toPath())) {
+			for (final Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+}
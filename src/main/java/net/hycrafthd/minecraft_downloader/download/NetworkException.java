@@ -0,0 +1,21 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.IOException;
+
+/**
+ * Thrown if the network fails while a request is sent or a response is read. Only these failures and transient http
+ * status codes count against the host and are retried by the {@link RetryPolicy}.
+ */
+public class NetworkException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public NetworkException(String message) {
+		super(message);
+	}
+
+	public NetworkException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
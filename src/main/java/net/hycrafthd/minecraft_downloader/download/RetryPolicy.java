@@ -0,0 +1,121 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.hycrafthd.minecraft_downloader.Main;
+
+/**
+ * Retries failed transfers with exponential backoff and jitter. Network errors and transient http status codes are
+ * retried and count against the {@link CircuitBreaker} of the host. Successful responses are recorded by the
+ * {@link DownloadEngine}. Files that do not match their SHA-1 are retried
+ * without blaming the host. Other status codes like 404 and local errors like a full disk fail immediately. A
+ * Retry-After header of the server is honoured and pauses the whole host.
+ */
+public class RetryPolicy {
+
+	public static final int DEFAULT_MAX_RETRIES = 4;
+	public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(500);
+
+	private static final Duration MAX_DELAY = Duration.ofSeconds(30);
+	private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(2);
+
+	private static volatile int maxRetries = DEFAULT_MAX_RETRIES;
+	private static volatile Duration baseDelay = DEFAULT_BASE_DELAY;
+
+	public static void configure(int maxRetries, Duration baseDelay) {
+		if (maxRetries < 0) {
+			throw new IllegalArgumentException("Retries must not be negative");
+		}
+		if (baseDelay.isNegative()) {
+			throw new IllegalArgumentException("Retry delay must not be negative");
+		}
+		RetryPolicy.maxRetries = maxRetries;
+		RetryPolicy.baseDelay = baseDelay;
+	}
+
+	/**
+	 * Run the attempt until it succeeds, fails with an error that cannot be retried or all retries are used up
+	 *
+	 * @param url Url that is requested by the attempt
+	 * @param attempt Attempt that requests the url
+	 * @return The result of the successful attempt
+	 */
+	public static <T> T run(String url, Attempt<T> attempt) throws IOException {
+		final CircuitBreaker breaker = CircuitBreaker.forUrl(url);
+
+		for (int retry = 0;; retry++) {
+			try {
+				// Success is recorded when a response arrives, attempts served from the disk say nothing about the host
+				return attempt.run();
+			} catch (final IOException ex) {
+				if (!isRetryable(ex)) {
+					throw ex;
+				}
+
+				if (isHostFailure(ex)) {
+					breaker.recordFailure();
+				}
+
+				if (retry >= maxRetries) {
+					Main.LOGGER.debug("Giving up on {} after {} retries", url, retry);
+					throw ex;
+				}
+
+				final Duration retryAfter = ex instanceof HttpStatusException statusException ? statusException.getRetryAfter() : null;
+				final Duration delay;
+				if (retryAfter != null) {
+					delay = retryAfter.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : retryAfter;
+					breaker.pause(delay);
+				} else {
+					delay = getBackoff(retry);
+				}
+
+				Main.LOGGER.warn("Request to {} failed: {}. Retry {} of {} in {} ms", url, ex.getMessage(), retry + 1, maxRetries, delay.toMillis());
+				sleep(delay);
+			}
+		}
+	}
+
+	private static boolean isRetryable(IOException exception) {
+		if (DownloadEngine.isOffline() || Thread.currentThread().isInterrupted()) {
+			return false;
+		}
+		if (exception instanceof HttpStatusException statusException) {
+			return statusException.isTransient();
+		}
+		return exception instanceof NetworkException || exception instanceof InvalidContentException;
+	}
+
+	private static boolean isHostFailure(IOException exception) {
+		return exception instanceof NetworkException || exception instanceof HttpStatusException;
+	}
+
+	/**
+	 * Exponential backoff with equal jitter, so retries of many files that failed at the same time are spread out
+	 */
+	private static Duration getBackoff(int retry) {
+		final long maxMillis = Math.min(MAX_DELAY.toMillis(), baseDelay.toMillis() << Math.min(retry, 20));
+		final long halfMillis = maxMillis / 2;
+		return Duration.ofMillis(halfMillis + ThreadLocalRandom.current().nextLong(maxMillis - halfMillis + 1));
+	}
+
+	private static void sleep(Duration delay) throws InterruptedIOException {
+		try {
+			TimeUnit.MILLISECONDS.sleep(delay.toMillis());
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a retry");
+		}
+	}
+
+	@FunctionalInterface
+	public interface Attempt<T> {
+
+		T run() throws IOException;
+	}
+
+}
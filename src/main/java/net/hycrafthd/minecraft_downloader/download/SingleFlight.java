@@ -0,0 +1,60 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import net.hycrafthd.minecraft_downloader.Main;
+
+/**
+ * Makes sure only one thread writes a file at a time. Asset indexes map many names to the same object, so the same
+ * file is often requested concurrently. Later callers wait for the running transfer and share its result.
+ */
+public class SingleFlight {
+
+	private static final Map<String, CompletableFuture<Void>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+	public static void run(File file, Action action) throws IOException {
+		final String key = file.getAbsolutePath();
+		final CompletableFuture<Void> flight = new CompletableFuture<>();
+		final CompletableFuture<Void> running = IN_FLIGHT.putIfAbsent(key, flight);
+
+		if (running != null) {
+			Main.LOGGER.debug("Wait for running transfer of file {}", file);
+			await(file, running);
+			return;
+		}
+
+		try {
+			action.run();
+			flight.complete(null);
+		} catch (final IOException | RuntimeException | Error ex) {
+			flight.completeExceptionally(ex);
+			throw ex;
+		} finally {
+			IN_FLIGHT.remove(key, flight);
+		}
+	}
+
+	private static void await(File file, CompletableFuture<Void> running) throws IOException {
+		try {
+			running.get();
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for transfer of file " + file);
+		} catch (final ExecutionException ex) {
+			throw new IOException("Shared transfer of file " + file + " failed", ex.getCause());
+		}
+	}
+
+	@FunctionalInterface
+	public interface Action {
+
+		void run() throws IOException;
+	}
+
+}
@@ -0,0 +1,145 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.util.FileUtil;
+
+/**
+ * Journal of files that were already verified in an output directory. It stores the size, modification time, file key
+ * (inode) and SHA-1 of every verified file, so unchanged files do not need to be hashed again on the next run.
+ */
+public class VerificationJournal {
+
+	public static final String FILE_NAME = ".verification_journal";
+
+	private static final String SEPARATOR = "\t";
+	private static final String NO_FILE_KEY = "-";
+
+	private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+	// Files this process wrote or hashed, their access times say nothing about the game
+	private static final Set<String> TOUCHED = ConcurrentHashMap.newKeySet();
+
+	private static volatile File journalFile;
+	private static volatile VerifyMode mode = VerifyMode.JOURNAL;
+	private static volatile boolean dirty;
+
+	public static void load(File outputDirectory, VerifyMode mode) {
+		VerificationJournal.mode = mode;
+		journalFile = new File(outputDirectory, FILE_NAME);
+		ENTRIES.clear();
+
+		if (mode == VerifyMode.FULL || !journalFile.isFile()) {
+			return;
+		}
+
+		try (final BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] parts = line.split(SEPARATOR, 5);
+				if (parts.length != 5) {
+					continue;
+				}
+				try {
+					ENTRIES.put(parts[4], new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+				} catch (final NumberFormatException ex) {
+					// Skip broken lines, the file will just be hashed again
+				}
+			}
+			Main.LOGGER.debug("Loaded {} entries from verification journal {}", ENTRIES.size(), journalFile);
+		} catch (final IOException ex) {
+			Main.LOGGER.warn("Could not read verification journal {}. All files will be hashed again", journalFile, ex);
+			ENTRIES.clear();
+		}
+	}
+
+	public static VerifyMode getMode() {
+		return mode;
+	}
+
+	public static boolean isVerified(File file, String sha1) {
+		if (mode == VerifyMode.FULL) {
+			return false;
+		}
+
+		final Entry entry = ENTRIES.get(file.getAbsolutePath());
+		if (entry == null || !entry.sha1().equals(sha1)) {
+			return false;
+		}
+
+		final Entry current = readEntry(file, sha1);
+		return current != null && current.equals(entry);
+	}
+
+	public static void record(File file, String sha1) {
+		TOUCHED.add(file.getAbsolutePath());
+		final Entry entry = readEntry(file, sha1);
+		if (entry != null && !entry.equals(ENTRIES.put(file.getAbsolutePath(), entry))) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Forget a temporary file that was deleted after it was verified
+	 */
+	public static void remove(File file) {
+		if (ENTRIES.remove(file.getAbsolutePath()) != null) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * @return True if the file was downloaded, restored or hashed by this process
+	 */
+	public static boolean isTouched(File file) {
+		return TOUCHED.contains(file.getAbsolutePath());
+	}
+
+	public static void save() {
+		final File file = journalFile;
+		if (file == null || !dirty) {
+			return;
+		}
+		dirty = false;
+
+		final File partFile = FileUtil.getPartFile(file);
+
+		try {
+			try (final BufferedWriter writer = Files.newBufferedWriter(partFile.toPath(), StandardCharsets.UTF_8)) {
+				for (final Map.Entry<String, Entry> mapEntry : ENTRIES.entrySet()) {
+					final Entry entry = mapEntry.getValue();
+					writer.write(entry.sha1() + SEPARATOR + entry.size() + SEPARATOR + entry.modified() + SEPARATOR + entry.fileKey() + SEPARATOR + mapEntry.getKey());
+					writer.newLine();
+				}
+			}
+			FileUtil.moveFile(partFile, file);
+			Main.LOGGER.debug("Saved {} entries to verification journal {}", ENTRIES.size(), file);
+		} catch (final IOException ex) {
+			Main.LOGGER.warn("Could not write verification journal {}", file, ex);
+		}
+	}
+
+	private static Entry readEntry(File file, String sha1) {
+		try {
+			final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			final Object fileKey = attributes.fileKey();
+			return new Entry(sha1, attributes.size(), attributes.lastModifiedTime().toMillis(), fileKey == null ? NO_FILE_KEY : fileKey.toString().replace(SEPARATOR, " "));
+		} catch (final IOException ex) {
+			return null;
+		}
+	}
+
+	private record Entry(String sha1, long size, long modified, String fileKey) {
+	}
+
+}
@@ -0,0 +1,47 @@
+package net.hycrafthd.minecraft_downloader.download;
+
+import java.util.Locale;
+
+/**
+ * How files that already exist are verified before they are downloaded again
+ */
+public enum VerifyMode {
+
+	/**
+	 * Skip hashing files whose size, modification time and file key did not change since they were last verified
+	 */
+	JOURNAL("journal"),
+	/**
+	 * Trust files that exist and have the expected size. Files without a known size are checked like in journal mode.
+	 */
+	SIZE("size"),
+	/**
+	 * Hash every file again
+	 */
+	FULL("full");
+
+	private final String name;
+
+	private VerifyMode(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public static VerifyMode fromString(String name) {
+		for (final VerifyMode mode : values()) {
+			if (mode.name.equals(name.toLowerCase(Locale.ROOT))) {
+				return mode;
+			}
+		}
+		throw new IllegalArgumentException("Unknown verify mode " + name);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
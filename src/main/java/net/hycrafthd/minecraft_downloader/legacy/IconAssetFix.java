@@ -5,6 +5,7 @@ import java.util.Map;
 
 import net.hycrafthd.minecraft_downloader.Constants;
 import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.download.DownloadScheduler;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson.AssetJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.AssetIndexJson;
 import net.hycrafthd.minecraft_downloader.util.FileUtil;
@@ -19,11 +20,11 @@ public class IconAssetFix {
 			FileUtil.createFolders(virtualAssets);
 			
 			// Map with icons to download
-			Map.of( //
+			DownloadScheduler.forEach(Map.of( //
 					"icons/icon_16x16.png", new AssetJson("bdf48ef6b5d0d23bbb02e17d04865216179f510a", 3665), //
 					"icons/icon_32x32.png", new AssetJson("92750c5f93c312ba9ab413d546f32190c56d6f1f", 5362), //
 					"icons/minecraft.icns", new AssetJson("991b421dfd401f115241601b2b373140a8d78572", 114786) //
-			).entrySet().parallelStream().forEach(entry -> {
+			).entrySet(), entry -> {
 				final String name = entry.getKey();
 				final AssetJson assetObject = entry.getValue();
 				
@@ -1,7 +1,6 @@
 package net.hycrafthd.minecraft_downloader.mod_loader;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -80,16 +79,9 @@ public abstract class AbstractModLoader implements ModLoader {
                 throw new RuntimeException("Installer does not contain " + entryName);
             }
 
-            // Create parent directories
-            FileUtil.createParentFolders(outputFile);
-
-            try (InputStream is = jarFile.getInputStream(entry);
-                 FileOutputStream fos = new FileOutputStream(outputFile)) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = is.read(buffer)) != -1) {
-                    fos.write(buffer, 0, bytesRead);
-                }
+            // Write to a part file first, so a partially extracted file is never used
+            try (InputStream is = jarFile.getInputStream(entry)) {
+                FileUtil.writeFile(outputFile, os -> FileUtil.copy(is, os, new byte[8192]));
             }
 
             classpathFiles.add(outputFile);
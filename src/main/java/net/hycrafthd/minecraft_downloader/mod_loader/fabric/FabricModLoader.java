@@ -2,8 +2,6 @@ package net.hycrafthd.minecraft_downloader.mod_loader.fabric;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -79,13 +77,10 @@ public class FabricModLoader extends AbstractModLoader {
 
         try {
             // Get the launcher metadata
-            URL profileUrl = new URL(FABRIC_META_URL + "/versions/loader/" + minecraftVersion + "/" + loaderVersion + "/profile/json");
+            String profileUrl = FABRIC_META_URL + "/versions/loader/" + minecraftVersion + "/" + loaderVersion + "/profile/json";
             Main.LOGGER.debug("Fetching Fabric profile from {}", profileUrl);
 
-            JsonObject profile;
-            try (InputStreamReader reader = new InputStreamReader(profileUrl.openStream())) {
-                profile = JsonParser.parseReader(reader).getAsJsonObject();
-            }
+            JsonObject profile = JsonParser.parseString(FileUtil.downloadText(profileUrl)).getAsJsonObject();
 
             // Extract JVM arguments from the profile
             if (profile.has("arguments") && profile.getAsJsonObject("arguments").has("jvm")) {
@@ -116,13 +111,10 @@ public class FabricModLoader extends AbstractModLoader {
 
         try {
             // Get the launcher metadata
-            URL profileUrl = new URL(FABRIC_META_URL + "/versions/loader/" + minecraftVersion + "/" + loaderVersion + "/profile/json");
+            String profileUrl = FABRIC_META_URL + "/versions/loader/" + minecraftVersion + "/" + loaderVersion + "/profile/json";
             Main.LOGGER.debug("Fetching Fabric profile from {}", profileUrl);
 
-            JsonObject profile;
-            try (InputStreamReader reader = new InputStreamReader(profileUrl.openStream())) {
-                profile = JsonParser.parseReader(reader).getAsJsonObject();
-            }
+            JsonObject profile = JsonParser.parseString(FileUtil.downloadText(profileUrl)).getAsJsonObject();
 
             // Extract game arguments from the profile
             if (profile.has("arguments") && profile.getAsJsonObject("arguments").has("game")) {
@@ -145,19 +137,17 @@ public class FabricModLoader extends AbstractModLoader {
         try {
             Main.LOGGER.info("Looking for latest Fabric loader version");
 
-            URL url = new URL(FABRIC_META_URL + "/versions/loader");
+            String url = FABRIC_META_URL + "/versions/loader";
             Main.LOGGER.debug("Fetching Fabric loader versions from {}", url);
 
-            try (InputStreamReader reader = new InputStreamReader(url.openStream())) {
-                JsonArray versions = JsonParser.parseReader(reader).getAsJsonArray();
-                Main.LOGGER.debug("Found {} Fabric loader versions", versions.size());
+            JsonArray versions = JsonParser.parseString(FileUtil.downloadText(url)).getAsJsonArray();
+            Main.LOGGER.debug("Found {} Fabric loader versions", versions.size());
 
-                if (versions.size() > 0) {
-                    JsonObject version = versions.get(0).getAsJsonObject();
-                    String loaderVersion = version.get("version").getAsString();
-                    Main.LOGGER.info("Latest Fabric loader version: {}", loaderVersion);
-                    return loaderVersion;
-                }
+            if (versions.size() > 0) {
+                JsonObject version = versions.get(0).getAsJsonObject();
+                String loaderVersion = version.get("version").getAsString();
+                Main.LOGGER.info("Latest Fabric loader version: {}", loaderVersion);
+                return loaderVersion;
             }
         } catch (IOException e) {
             Main.LOGGER.error("Failed to get latest Fabric loader version", e);
@@ -171,19 +161,17 @@ public class FabricModLoader extends AbstractModLoader {
         try {
             Main.LOGGER.info("Looking for Fabric intermediary version for Minecraft {}", minecraftVersion);
 
-            URL url = new URL(FABRIC_META_URL + "/versions/intermediary/" + minecraftVersion);
+            String url = FABRIC_META_URL + "/versions/intermediary/" + minecraftVersion;
             Main.LOGGER.debug("Fetching Fabric intermediary versions from {}", url);
 
-            try (InputStreamReader reader = new InputStreamReader(url.openStream())) {
-                JsonArray versions = JsonParser.parseReader(reader).getAsJsonArray();
-                Main.LOGGER.debug("Found {} Fabric intermediary versions", versions.size());
+            JsonArray versions = JsonParser.parseString(FileUtil.downloadText(url)).getAsJsonArray();
+            Main.LOGGER.debug("Found {} Fabric intermediary versions", versions.size());
 
-                if (versions.size() > 0) {
-                    JsonObject version = versions.get(0).getAsJsonObject();
-                    String intermediaryVersion = version.get("version").getAsString();
-                    Main.LOGGER.info("Fabric intermediary version for Minecraft {}: {}", minecraftVersion, intermediaryVersion);
-                    return intermediaryVersion;
-                }
+            if (versions.size() > 0) {
+                JsonObject version = versions.get(0).getAsJsonObject();
+                String intermediaryVersion = version.get("version").getAsString();
+                Main.LOGGER.info("Fabric intermediary version for Minecraft {}: {}", minecraftVersion, intermediaryVersion);
+                return intermediaryVersion;
             }
         } catch (IOException e) {
             Main.LOGGER.error("Failed to get Fabric intermediary version for Minecraft {}", minecraftVersion, e);
@@ -196,22 +184,16 @@ public class FabricModLoader extends AbstractModLoader {
     private JsonObject getLauncherMetadata() {
         try {
             // First, get the loader version info
-            URL loaderUrl = new URL(FABRIC_META_URL + "/versions/loader/" + minecraftVersion + "/" + loaderVersion);
+            String loaderUrl = FABRIC_META_URL + "/versions/loader/" + minecraftVersion + "/" + loaderVersion;
             Main.LOGGER.debug("Fetching Fabric loader info from {}", loaderUrl);
 
-            JsonObject loaderInfo;
-            try (InputStreamReader reader = new InputStreamReader(loaderUrl.openStream())) {
-                loaderInfo = JsonParser.parseReader(reader).getAsJsonObject();
-            }
+            JsonObject loaderInfo = JsonParser.parseString(FileUtil.downloadText(loaderUrl)).getAsJsonObject();
 
             // Then, get the full profile
-            URL profileUrl = new URL(FABRIC_META_URL + "/versions/loader/" + minecraftVersion + "/" + loaderVersion + "/profile/json");
+            String profileUrl = FABRIC_META_URL + "/versions/loader/" + minecraftVersion + "/" + loaderVersion + "/profile/json";
             Main.LOGGER.debug("Fetching Fabric profile from {}", profileUrl);
 
-            JsonObject profile;
-            try (InputStreamReader reader = new InputStreamReader(profileUrl.openStream())) {
-                profile = JsonParser.parseReader(reader).getAsJsonObject();
-            }
+            JsonObject profile = JsonParser.parseString(FileUtil.downloadText(profileUrl)).getAsJsonObject();
 
             // Create a custom launcher metadata object
             JsonObject launcherMeta = new JsonObject();
@@ -6,7 +6,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -21,6 +20,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.download.DownloadEngine;
 import net.hycrafthd.minecraft_downloader.mod_loader.AbstractModLoader;
 import net.hycrafthd.minecraft_downloader.settings.ProvidedSettings;
 import net.hycrafthd.minecraft_downloader.util.FileUtil;
@@ -222,14 +222,12 @@ public class ForgeModLoader extends AbstractModLoader {
                 String installerUrl = FORGE_MAVEN_URL + "/net/minecraftforge/forge/" + version + "/forge-" + version + "-installer.jar";
 
                 try {
-                    URL url = new URL(installerUrl);
-                    url.openStream().close();
-
-                    // If we get here, the file exists
-                    Main.LOGGER.info("Found Forge version: {}", version);
-                    return version;
+                    if (DownloadEngine.exists(installerUrl)) {
+                        Main.LOGGER.info("Found Forge version: {}", version);
+                        return version;
+                    }
                 } catch (IOException e) {
-                    // File doesn't exist, try the next version
+                    // File can't be checked, try the next version
                 }
             }
 
@@ -4,8 +4,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -204,33 +202,30 @@ public class NeoForgeModLoader extends AbstractModLoader {
             Main.LOGGER.info("Looking for NeoForge versions for Minecraft {} (cut version: {})", minecraftVersion, cutVersion);
 
             // Get the list of NeoForge versions from the API
-            URL url = new URL(NEOFORGE_VERSIONS_API);
-            try (InputStreamReader reader = new InputStreamReader(url.openStream())) {
-                JsonObject response = JsonParser.parseReader(reader).getAsJsonObject();
-                JsonArray versions = response.getAsJsonArray("versions");
-
-                // Find versions that match the cut Minecraft version
-                List<String> matchingVersions = new ArrayList<>();
-                for (JsonElement element : versions) {
-                    String version = element.getAsString();
-                    if (version.startsWith(cutVersion + ".")) {
-                        matchingVersions.add(version);
-                    }
+            JsonObject response = JsonParser.parseString(FileUtil.downloadText(NEOFORGE_VERSIONS_API)).getAsJsonObject();
+            JsonArray versions = response.getAsJsonArray("versions");
+
+            // Find versions that match the cut Minecraft version
+            List<String> matchingVersions = new ArrayList<>();
+            for (JsonElement element : versions) {
+                String version = element.getAsString();
+                if (version.startsWith(cutVersion + ".")) {
+                    matchingVersions.add(version);
                 }
+            }
 
-                if (matchingVersions.isEmpty()) {
-                    throw new RuntimeException("No NeoForge version found for Minecraft " + minecraftVersion);
-                }
+            if (matchingVersions.isEmpty()) {
+                throw new RuntimeException("No NeoForge version found for Minecraft " + minecraftVersion);
+            }
 
-                // Sort versions in reverse order to get the latest
-                Collections.sort(matchingVersions, Collections.reverseOrder());
+            // Sort versions in reverse order to get the latest
+            Collections.sort(matchingVersions, Collections.reverseOrder());
 
-                // Get the latest version
-                String latestVersion = matchingVersions.get(0);
-                Main.LOGGER.info("Found latest NeoForge version for Minecraft {}: {}", minecraftVersion, latestVersion);
+            // Get the latest version
+            String latestVersion = matchingVersions.get(0);
+            Main.LOGGER.info("Found latest NeoForge version for Minecraft {}: {}", minecraftVersion, latestVersion);
 
-                return latestVersion;
-            }
+            return latestVersion;
         } catch (Exception e) {
             throw new RuntimeException("Failed to get latest NeoForge version for Minecraft " + minecraftVersion, e);
         }
@@ -0,0 +1,347 @@
+package net.hycrafthd.minecraft_downloader.mojang_api;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson.AssetJson;
+
+/**
+ * Read only asset index that keeps its entries in primitive arrays. All names share one char pool and every distinct
+ * hash is stored once as a 20 byte value together with the size of its object. Entries are addressed by their index
+ * in the asset index and objects by their index in the list of distinct hashes. Entries can be looked up by name
+ * through an open addressing table over the name pool. If a hash appears with different sizes, the first size is
+ * used for all of its entries.
+ */
+public class CompactAssetIndex {
+	
+	private static final int HASH_LENGTH = 20;
+	private static final HexFormat HEX = HexFormat.of();
+	
+	private final char[] names;
+	private final int[] nameEnds;
+	private final int[] entryObjects;
+	private final int entryCount;
+	
+	// Open addressing table of entry index + 1, zero marks a free slot
+	private final int[] nameTable;
+	
+	private final byte[] hashes;
+	private final int[] sizes;
+	private final int objectCount;
+	
+	private CompactAssetIndex(Builder builder) {
+		names = Arrays.copyOf(builder.names, builder.nameLength);
+		nameEnds = Arrays.copyOf(builder.nameEnds, builder.entryCount);
+		entryObjects = Arrays.copyOf(builder.entryObjects, builder.entryCount);
+		entryCount = builder.entryCount;
+		hashes = Arrays.copyOf(builder.hashes, builder.objectCount * HASH_LENGTH);
+		sizes = Arrays.copyOf(builder.sizes, builder.objectCount);
+		objectCount = builder.objectCount;
+		
+		nameTable = new int[Math.max(16, Integer.highestOneBit(Math.max(1, entryCount)) << 2)];
+		final int mask = nameTable.length - 1;
+		for (int entry = 0; entry < entryCount; entry++) {
+			int slot = getNameSlot(hashName(entry), mask);
+			while (nameTable[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			nameTable[slot] = entry + 1;
+		}
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	public int getEntryCount() {
+		return entryCount;
+	}
+	
+	public String getName(int entry) {
+		final int start = entry == 0 ? 0 : nameEnds[entry - 1];
+		return new String(names, start, nameEnds[entry] - start);
+	}
+	
+	/**
+	 * @return Index of the first entry with the name or -1 if there is none
+	 */
+	public int indexOf(String name) {
+		final int mask = nameTable.length - 1;
+		for (int slot = getNameSlot(name.hashCode(), mask); nameTable[slot] != 0; slot = (slot + 1) & mask) {
+			final int entry = nameTable[slot] - 1;
+			if (nameEquals(entry, name)) {
+				return entry;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return Index of the object the entry points to
+	 */
+	public int getObject(int entry) {
+		return entryObjects[entry];
+	}
+	
+	/**
+	 * @return Number of distinct hashes
+	 */
+	public int getObjectCount() {
+		return objectCount;
+	}
+	
+	/**
+	 * @return Hash of the object as hex string
+	 */
+	public String getHash(int object) {
+		checkObject(object);
+		return HEX.formatHex(hashes, object * HASH_LENGTH, (object + 1) * HASH_LENGTH);
+	}
+	
+	public byte[] getHashBytes(int object) {
+		checkObject(object);
+		return Arrays.copyOfRange(hashes, object * HASH_LENGTH, (object + 1) * HASH_LENGTH);
+	}
+	
+	public int getSize(int object) {
+		return sizes[object];
+	}
+	
+	/**
+	 * Unmodifiable view of the entries by name. The asset objects are created while iterating and by lookups.
+	 */
+	public Map<String, AssetJson> asMap() {
+		return new AbstractMap<>() {
+			
+			@Override
+			public AssetJson get(Object key) {
+				final int entry = key instanceof String name ? indexOf(name) : -1;
+				if (entry < 0) {
+					return null;
+				}
+				final int object = getObject(entry);
+				return new AssetJson(getHash(object), getSize(object));
+			}
+			
+			@Override
+			public boolean containsKey(Object key) {
+				return key instanceof String name && indexOf(name) >= 0;
+			}
+			
+			@Override
+			public Set<Entry<String, AssetJson>> entrySet() {
+				return new AbstractSet<>() {
+					
+					@Override
+					public Iterator<Entry<String, AssetJson>> iterator() {
+						return new Iterator<>() {
+							
+							private int entry;
+							
+							@Override
+							public boolean hasNext() {
+								return entry < entryCount;
+							}
+							
+							@Override
+							public Entry<String, AssetJson> next() {
+								if (!hasNext()) {
+									throw new NoSuchElementException();
+								}
+								final int object = getObject(entry);
+								return Map.entry(getName(entry++), new AssetJson(getHash(object), getSize(object)));
+							}
+						};
+					}
+					
+					@Override
+					public int size() {
+						return entryCount;
+					}
+				};
+			}
+		};
+	}
+	
+	/**
+	 * Unmodifiable view of the distinct asset objects. Entries with the same hash share one object.
+	 */
+	public List<AssetJson> getObjects() {
+		return new AbstractList<>() {
+			
+			@Override
+			public AssetJson get(int object) {
+				return new AssetJson(getHash(object), getSize(object));
+			}
+			
+			@Override
+			public int size() {
+				return objectCount;
+			}
+		};
+	}
+	
+	/**
+	 * Same as {@link String#hashCode()} of the name, so lookups can use the cached hash of the string
+	 */
+	private int hashName(int entry) {
+		final int start = entry == 0 ? 0 : nameEnds[entry - 1];
+		int hash = 0;
+		for (int index = start; index < nameEnds[entry]; index++) {
+			hash = 31 * hash + names[index];
+		}
+		return hash;
+	}
+	
+	private boolean nameEquals(int entry, String name) {
+		final int start = entry == 0 ? 0 : nameEnds[entry - 1];
+		if (nameEnds[entry] - start != name.length()) {
+			return false;
+		}
+		for (int index = 0; index < name.length(); index++) {
+			if (names[start + index] != name.charAt(index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static int getNameSlot(int hash, int mask) {
+		// Spread the high bits because names often only differ at the end
+		return (hash ^ hash >>> 16) & mask;
+	}
+	
+	private void checkObject(int object) {
+		if (object < 0 || object >= objectCount) {
+			throw new IndexOutOfBoundsException("Object " + object + " is out of bounds for " + objectCount + " objects");
+		}
+	}
+	
+	public static class Builder {
+		
+		private char[] names = new char[4096];
+		private int nameLength;
+		
+		private int[] nameEnds = new int[256];
+		private int[] entryObjects = new int[256];
+		private int entryCount;
+		
+		private byte[] hashes = new byte[256 * HASH_LENGTH];
+		private int[] sizes = new int[256];
+		private int objectCount;
+		
+		// Open addressing table of object index + 1, zero marks a free slot
+		private int[] table = new int[512];
+		
+		private Builder() {
+		}
+		
+		/**
+		 * @param name Name of the asset
+		 * @param hash SHA-1 of the asset as hex string
+		 * @param size Size of the asset
+		 */
+		public Builder add(String name, String hash, int size) {
+			if (name == null) {
+				throw new IllegalArgumentException("Asset name must not be null");
+			}
+			
+			final int object = addObject(hash, size);
+			
+			if (entryCount == nameEnds.length) {
+				nameEnds = Arrays.copyOf(nameEnds, entryCount * 2);
+				entryObjects = Arrays.copyOf(entryObjects, entryCount * 2);
+			}
+			if (nameLength + name.length() > names.length) {
+				names = Arrays.copyOf(names, Math.max(names.length * 2, nameLength + name.length()));
+			}
+			
+			name.getChars(0, name.length(), names, nameLength);
+			nameLength += name.length();
+			nameEnds[entryCount] = nameLength;
+			entryObjects[entryCount] = object;
+			entryCount++;
+			return this;
+		}
+		
+		public CompactAssetIndex build() {
+			return new CompactAssetIndex(this);
+		}
+		
+		private int addObject(String hash, int size) {
+			if (objectCount * HASH_LENGTH == hashes.length) {
+				hashes = Arrays.copyOf(hashes, hashes.length * 2);
+				sizes = Arrays.copyOf(sizes, objectCount * 2);
+			}
+			
+			// Parse into the next free slot, it is only kept if the hash is new
+			final int offset = objectCount * HASH_LENGTH;
+			parseHash(hash, offset);
+			
+			final int mask = table.length - 1;
+			int slot = getSlot(offset, mask);
+			while (table[slot] != 0) {
+				final int existing = table[slot] - 1;
+				if (Arrays.equals(hashes, existing * HASH_LENGTH, (existing + 1) * HASH_LENGTH, hashes, offset, offset + HASH_LENGTH)) {
+					if (sizes[existing] != size) {
+						// Both entries point to the same object file, so only one size can be right and the index stays loadable
+						Main.LOGGER.debug("Asset hash {} has the sizes {} and {}. Keep the first one", hash, sizes[existing], size);
+					}
+					return existing;
+				}
+				slot = (slot + 1) & mask;
+			}
+			
+			table[slot] = objectCount + 1;
+			sizes[objectCount] = size;
+			objectCount++;
+			
+			if (objectCount * 2 > table.length) {
+				rehash();
+			}
+			return objectCount - 1;
+		}
+		
+		private void parseHash(String hash, int offset) {
+			if (hash == null || hash.length() != HASH_LENGTH * 2) {
+				throw new IllegalArgumentException("Invalid asset hash " + hash);
+			}
+			for (int index = 0; index < HASH_LENGTH; index++) {
+				final int high = Character.digit(hash.charAt(index * 2), 16);
+				final int low = Character.digit(hash.charAt(index * 2 + 1), 16);
+				if (high < 0 || low < 0) {
+					throw new IllegalArgumentException("Invalid asset hash " + hash);
+				}
+				hashes[offset + index] = (byte) (high << 4 | low);
+			}
+		}
+		
+		private int getSlot(int offset, int mask) {
+			// The hash is already evenly distributed, so its first bytes are used as the table hash
+			return (hashes[offset] << 24 | (hashes[offset + 1] & 0xFF) << 16 | (hashes[offset + 2] & 0xFF) << 8 | hashes[offset + 3] & 0xFF) & mask;
+		}
+		
+		private void rehash() {
+			table = new int[table.length * 2];
+			final int mask = table.length - 1;
+			for (int object = 0; object < objectCount; object++) {
+				final int offset = object * HASH_LENGTH;
+				int slot = getSlot(offset, mask);
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = object + 1;
+			}
+		}
+	}
+	
+}
@@ -1,5 +1,6 @@
 package net.hycrafthd.minecraft_downloader.mojang_api;
 
+import java.util.List;
 import java.util.Map;
 
 import com.google.gson.annotations.JsonAdapter;
@@ -17,14 +18,24 @@ public class CurrentAssetIndexJson {
 	
 	protected boolean mapToResources;
 	protected boolean virtual;
-	protected Map<String, AssetJson> assets;
+	protected CompactAssetIndex index;
 	
 	public CurrentAssetIndexJson(Map<String, AssetJson> assets, boolean mapToResources, boolean virtual) {
-		this.assets = assets;
+		this(toIndex(assets), mapToResources, virtual);
+	}
+	
+	public CurrentAssetIndexJson(CompactAssetIndex index, boolean mapToResources, boolean virtual) {
+		this.index = index;
 		this.mapToResources = mapToResources;
 		this.virtual = virtual;
 	}
 	
+	private static CompactAssetIndex toIndex(Map<String, AssetJson> assets) {
+		final CompactAssetIndex.Builder builder = CompactAssetIndex.builder();
+		assets.forEach((name, asset) -> builder.add(name, asset.getHash(), asset.getSize()));
+		return builder.build();
+	}
+	
 	public boolean isMapToResources() {
 		return mapToResources;
 	}
@@ -33,13 +44,27 @@ public class CurrentAssetIndexJson {
 		return virtual;
 	}
 	
+	/**
+	 * Assets by name. The asset objects are created on access, see {@link CompactAssetIndex#asMap()}.
+	 */
 	public Map<String, AssetJson> getAssets() {
-		return assets;
+		return index.asMap();
+	}
+	
+	/**
+	 * Distinct asset objects, so every object is only downloaded once
+	 */
+	public List<AssetJson> getObjects() {
+		return index.getObjects();
+	}
+	
+	public CompactAssetIndex getIndex() {
+		return index;
 	}
 	
 	@Override
 	public String toString() {
-		return "CurrentAssetIndexJson [assets=" + assets + "]";
+		return "CurrentAssetIndexJson [assets=" + getAssets() + "]";
 	}
 	
 	public static class AssetJson {
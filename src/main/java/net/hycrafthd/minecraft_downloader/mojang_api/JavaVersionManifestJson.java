@@ -2,8 +2,12 @@ package net.hycrafthd.minecraft_downloader.mojang_api;
 
 import java.util.ArrayList;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
+import net.hycrafthd.minecraft_downloader.mojang_api.json_serializer.JavaVersionManifestSerializer;
+
+@JsonAdapter(JavaVersionManifestSerializer.class)
 public class JavaVersionManifestJson {
 	
 	protected PlatformJson gamecore;
@@ -1,73 +1,102 @@
 package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.ArrayList;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.ArgumentsJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.ArgumentsJson.ConditionalGameArgumentJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.ArgumentsJson.ConditionalJvmArgumentJson;
 
-public class ArgumentsSerializer implements JsonDeserializer<ArgumentsJson>, JsonSerializer<ArgumentsJson> {
+/**
+ * Reads the game and jvm arguments directly from the stream. Plain arguments are strings and conditional arguments are
+ * objects, which are read with the adapters of the gson instance.
+ */
+public class ArgumentsSerializer implements TypeAdapterFactory {
 	
+	@SuppressWarnings("unchecked")
 	@Override
-	public JsonElement serialize(ArgumentsJson arguments, Type typeOfSrc, JsonSerializationContext context) {
-		final JsonObject json = new JsonObject();
-		final JsonArray gameArray = new JsonArray();
-		
-		arguments.getGameArguments().forEach(argument -> gameArray.add(argument));
-		arguments.getConditionalGameArguments().forEach(conditionalArgument -> gameArray.add(context.serialize(conditionalArgument)));
-		
-		json.add("game", gameArray);
-		
-		final JsonArray jvmArray = new JsonArray();
-		
-		arguments.getConditionalJvmArguments().forEach(conditionalArgument -> jvmArray.add(context.serialize(conditionalArgument)));
-		arguments.getJvmArguments().forEach(argument -> jvmArray.add(argument));
-		
-		json.add("jvm", jvmArray);
-		
-		return json;
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		if (type.getRawType() != ArgumentsJson.class) {
+			return null;
+		}
+		return (TypeAdapter<T>) new Adapter(gson.getAdapter(ConditionalGameArgumentJson.class), gson.getAdapter(ConditionalJvmArgumentJson.class));
 	}
 	
-	@Override
-	public ArgumentsJson deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-		final JsonObject object = json.getAsJsonObject();
-		final JsonArray gameArray = object.get("game").getAsJsonArray();
+	private static class Adapter extends TypeAdapter<ArgumentsJson> {
 		
-		final ArrayList<String> gameArguments = new ArrayList<>();
-		final ArrayList<ConditionalGameArgumentJson> conditionalGameArguments = new ArrayList<>();
+		private final TypeAdapter<ConditionalGameArgumentJson> gameAdapter;
+		private final TypeAdapter<ConditionalJvmArgumentJson> jvmAdapter;
 		
-		gameArray.forEach(element -> {
-			if (element.isJsonPrimitive()) {
-				gameArguments.add(element.getAsString());
-			} else {
-				conditionalGameArguments.add(context.deserialize(element.getAsJsonObject(), ConditionalGameArgumentJson.class));
-			}
-		});
-		
-		final JsonArray jvmArray = object.get("jvm").getAsJsonArray();
+		private Adapter(TypeAdapter<ConditionalGameArgumentJson> gameAdapter, TypeAdapter<ConditionalJvmArgumentJson> jvmAdapter) {
+			this.gameAdapter = gameAdapter;
+			this.jvmAdapter = jvmAdapter;
+		}
 		
-		final ArrayList<String> jvmArguments = new ArrayList<>();
-		final ArrayList<ConditionalJvmArgumentJson> conditionaljvmArguments = new ArrayList<>();
+		@Override
+		public void write(JsonWriter writer, ArgumentsJson arguments) throws IOException {
+			writer.beginObject();
+			
+			writer.name("game").beginArray();
+			for (final String argument : arguments.getGameArguments()) {
+				writer.value(argument);
+			}
+			for (final ConditionalGameArgumentJson argument : arguments.getConditionalGameArguments()) {
+				gameAdapter.write(writer, argument);
+			}
+			writer.endArray();
+			
+			writer.name("jvm").beginArray();
+			for (final ConditionalJvmArgumentJson argument : arguments.getConditionalJvmArguments()) {
+				jvmAdapter.write(writer, argument);
+			}
+			for (final String argument : arguments.getJvmArguments()) {
+				writer.value(argument);
+			}
+			writer.endArray();
+			
+			writer.endObject();
+		}
 		
-		jvmArray.forEach(element -> {
-			if (element.isJsonPrimitive()) {
-				jvmArguments.add(element.getAsString());
-			} else {
-				conditionaljvmArguments.add(context.deserialize(element, ConditionalJvmArgumentJson.class));
+		@Override
+		public ArgumentsJson read(JsonReader reader) throws IOException {
+			final ArrayList<String> gameArguments = new ArrayList<>();
+			final ArrayList<ConditionalGameArgumentJson> conditionalGameArguments = new ArrayList<>();
+			
+			final ArrayList<String> jvmArguments = new ArrayList<>();
+			final ArrayList<ConditionalJvmArgumentJson> conditionalJvmArguments = new ArrayList<>();
+			
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "game" -> readArguments(reader, gameArguments, conditionalGameArguments, gameAdapter);
+				case "jvm" -> readArguments(reader, jvmArguments, conditionalJvmArguments, jvmAdapter);
+				default -> reader.skipValue();
+				}
 			}
-		});
+			reader.endObject();
+			
+			return new ArgumentsJson(gameArguments, conditionalGameArguments, jvmArguments, conditionalJvmArguments);
+		}
 		
-		return new ArgumentsJson(gameArguments, conditionalGameArguments, jvmArguments, conditionaljvmArguments);
+		private <C> void readArguments(JsonReader reader, ArrayList<String> arguments, ArrayList<C> conditionalArguments, TypeAdapter<C> adapter) throws IOException {
+			reader.beginArray();
+			while (reader.hasNext()) {
+				if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+					conditionalArguments.add(adapter.read(reader));
+				} else {
+					arguments.add(ValueSerializer.nextString(reader));
+				}
+			}
+			reader.endArray();
+		}
 	}
 	
 }
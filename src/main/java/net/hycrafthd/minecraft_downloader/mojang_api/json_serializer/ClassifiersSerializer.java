@@ -1,44 +1,65 @@
 package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.stream.Collectors;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.LibraryJson.DownloadsJson.ArtifactJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.LibraryJson.DownloadsJson.ClassifiersJson;
 
-public class ClassifiersSerializer implements JsonDeserializer<ClassifiersJson>, JsonSerializer<ClassifiersJson> {
+/**
+ * Reads the classifier artifacts of a library directly from the stream. The artifacts are read with the adapter of the
+ * gson instance.
+ */
+public class ClassifiersSerializer implements TypeAdapterFactory {
 	
+	@SuppressWarnings("unchecked")
 	@Override
-	public JsonElement serialize(ClassifiersJson classifiers, Type typeOfSrc, JsonSerializationContext context) {
-		final JsonObject json = new JsonObject();
-		
-		classifiers.getClassifiers() //
-				.entrySet() //
-				.stream() //
-				.forEach(entry -> {
-					json.add(entry.getKey(), context.serialize(entry.getValue()));
-				});
-		
-		return json;
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		if (type.getRawType() != ClassifiersJson.class) {
+			return null;
+		}
+		return (TypeAdapter<T>) new Adapter(gson.getAdapter(ArtifactJson.class));
 	}
 	
-	@Override
-	public ClassifiersJson deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-		final Map<String, ArtifactJson> classifiers = json.getAsJsonObject() //
-				.entrySet() //
-				.stream() //
-				.collect(Collectors.toMap(Entry::getKey, entry -> context.deserialize(entry.getValue(), ArtifactJson.class)));
-		return new ClassifiersJson(classifiers);
+	private static class Adapter extends TypeAdapter<ClassifiersJson> {
+		
+		private final TypeAdapter<ArtifactJson> artifactAdapter;
+		
+		private Adapter(TypeAdapter<ArtifactJson> artifactAdapter) {
+			this.artifactAdapter = artifactAdapter;
+		}
+		
+		@Override
+		public void write(JsonWriter writer, ClassifiersJson classifiers) throws IOException {
+			writer.beginObject();
+			for (final Entry<String, ArtifactJson> entry : classifiers.getClassifiers().entrySet()) {
+				writer.name(entry.getKey());
+				artifactAdapter.write(writer, entry.getValue());
+			}
+			writer.endObject();
+		}
+		
+		@Override
+		public ClassifiersJson read(JsonReader reader) throws IOException {
+			final Map<String, ArtifactJson> classifiers = new HashMap<>();
+			
+			reader.beginObject();
+			while (reader.hasNext()) {
+				classifiers.put(reader.nextName(), artifactAdapter.read(reader));
+			}
+			reader.endObject();
+			
+			return new ClassifiersJson(classifiers);
+		}
 	}
 	
 }
@@ -1,73 +1,108 @@
 package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
 
-import java.lang.reflect.Type;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.stream.Collectors;
+import java.io.IOException;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import net.hycrafthd.minecraft_downloader.mojang_api.CompactAssetIndex;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson;
-import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson.AssetJson;
 
-public class CurrentAssetIndexSerializer implements JsonDeserializer<CurrentAssetIndexJson>, JsonSerializer<CurrentAssetIndexJson> {
+/**
+ * Reads the asset index directly from the stream into a {@link CompactAssetIndex}. The index has thousands of objects,
+ * so neither a json tree nor an object per asset is built for it.
+ */
+public class CurrentAssetIndexSerializer extends TypeAdapter<CurrentAssetIndexJson> {
 	
 	@Override
-	public JsonElement serialize(CurrentAssetIndexJson assetIndex, Type typeOfSrc, JsonSerializationContext context) {
-		final JsonObject json = new JsonObject();
-		final JsonObject objects = new JsonObject();
+	public void write(JsonWriter writer, CurrentAssetIndexJson assetIndex) throws IOException {
+		writer.beginObject();
 		
-		assetIndex.getAssets() //
-				.entrySet() //
-				.stream() //
-				.forEach(entry -> {
-					objects.add(entry.getKey(), context.serialize(entry.getValue()));
-				});
+		final CompactAssetIndex index = assetIndex.getIndex();
 		
-		json.add("objects", objects);
+		writer.name("objects").beginObject();
+		for (int entry = 0; entry < index.getEntryCount(); entry++) {
+			final int object = index.getObject(entry);
+			writer.name(index.getName(entry)).beginObject();
+			writer.name("hash").value(index.getHash(object));
+			writer.name("size").value(index.getSize(object));
+			writer.endObject();
+		}
+		writer.endObject();
 		
 		if (assetIndex.isMapToResources()) {
-			json.addProperty("map_to_resources", assetIndex.isMapToResources());
+			writer.name("map_to_resources").value(assetIndex.isMapToResources());
 		}
 		
 		if (assetIndex.isVirtual()) {
-			json.addProperty("virtual", assetIndex.isVirtual());
+			writer.name("virtual").value(assetIndex.isVirtual());
 		}
 		
-		return json;
+		writer.endObject();
 	}
 	
 	@Override
-	public CurrentAssetIndexJson deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-		final JsonObject object = json.getAsJsonObject();
-		
-		final Map<String, AssetJson> assets = object.get("objects") //
-				.getAsJsonObject() //
-				.entrySet() //
-				.stream() //
-				.collect(Collectors.toMap(Entry::getKey, entry -> context.deserialize(entry.getValue(), AssetJson.class)));
+	public CurrentAssetIndexJson read(JsonReader reader) throws IOException {
+		CompactAssetIndex assets = null;
+		boolean mapToResources = false;
+		boolean virtual = false;
 		
-		final boolean mapToResources;
-		if (object.has("map_to_resources")) {
-			mapToResources = object.get("map_to_resources").getAsBoolean();
-		} else {
-			mapToResources = false;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "objects" -> assets = readAssets(reader);
+			case "map_to_resources" -> mapToResources = reader.nextBoolean();
+			case "virtual" -> virtual = reader.nextBoolean();
+			default -> reader.skipValue();
+			}
 		}
+		reader.endObject();
 		
-		final boolean virtual;
-		if (object.has("virtual")) {
-			virtual = object.get("virtual").getAsBoolean();
-		} else {
-			virtual = false;
+		if (assets == null) {
+			throw new JsonParseException("Asset index has no objects");
 		}
 		
 		return new CurrentAssetIndexJson(assets, mapToResources, virtual);
 	}
 	
+	private CompactAssetIndex readAssets(JsonReader reader) throws IOException {
+		final CompactAssetIndex.Builder builder = CompactAssetIndex.builder();
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			readAsset(reader, reader.nextName(), builder);
+		}
+		reader.endObject();
+		
+		return builder.build();
+	}
+	
+	private void readAsset(JsonReader reader, String name, CompactAssetIndex.Builder builder) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			throw new JsonParseException("Asset " + name + " has no object");
+		}
+		
+		String hash = null;
+		int size = 0;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "hash" -> hash = reader.nextString();
+			case "size" -> size = reader.nextInt();
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		try {
+			builder.add(name, hash, size);
+		} catch (final IllegalArgumentException ex) {
+			throw new JsonParseException("Invalid asset " + name, ex);
+		}
+	}
+	
 }
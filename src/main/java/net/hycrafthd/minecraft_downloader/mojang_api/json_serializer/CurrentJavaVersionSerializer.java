@@ -1,51 +1,175 @@
 package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.stream.Collectors;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson.FileJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson.FileJson.DownloadsJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson.FileJson.DownloadsJson.DownloadJson;
 
-public class CurrentJavaVersionSerializer implements JsonDeserializer<CurrentJavaVersionJson>, JsonSerializer<CurrentJavaVersionJson> {
+/**
+ * Reads the java runtime index directly from the stream without building a json tree or using reflection for the
+ * file entries
+ */
+public class CurrentJavaVersionSerializer extends TypeAdapter<CurrentJavaVersionJson> {
 	
 	@Override
-	public JsonElement serialize(CurrentJavaVersionJson javaVersion, Type typeOfSrc, JsonSerializationContext context) {
-		final JsonObject json = new JsonObject();
-		final JsonObject files = new JsonObject();
+	public void write(JsonWriter writer, CurrentJavaVersionJson javaVersion) throws IOException {
+		writer.beginObject();
 		
-		javaVersion.getFiles() //
-				.entrySet() //
-				.stream() //
-				.forEach(entry -> {
-					files.add(entry.getKey(), context.serialize(entry.getValue()));
-				});
+		writer.name("files").beginObject();
+		for (final Entry<String, FileJson> entry : javaVersion.getFiles().entrySet()) {
+			writer.name(entry.getKey());
+			writeFile(writer, entry.getValue());
+		}
+		writer.endObject();
 		
-		json.add("files", files);
+		writer.endObject();
+	}
+	
+	private void writeFile(JsonWriter writer, FileJson file) throws IOException {
+		if (file == null) {
+			writer.nullValue();
+			return;
+		}
+		
+		writer.beginObject();
+		
+		final DownloadsJson downloads = file.getDownloads();
+		if (downloads != null) {
+			writer.name("downloads").beginObject();
+			writeDownload(writer, "lzma", downloads.getLzma());
+			writeDownload(writer, "raw", downloads.getRaw());
+			writer.endObject();
+		}
+		
+		writer.name("executable").value(file.isExecutable());
+		
+		if (file.getType() != null) {
+			writer.name("type").value(file.getType());
+		}
+		
+		writer.endObject();
+	}
+	
+	private void writeDownload(JsonWriter writer, String name, DownloadJson download) throws IOException {
+		if (download == null) {
+			return;
+		}
 		
-		return json;
+		writer.name(name).beginObject();
+		writer.name("sha1").value(download.getSha1());
+		writer.name("size").value(download.getSize());
+		writer.name("url").value(download.getUrl());
+		writer.endObject();
 	}
 	
 	@Override
-	public CurrentJavaVersionJson deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-		final JsonObject object = json.getAsJsonObject();
+	public CurrentJavaVersionJson read(JsonReader reader) throws IOException {
+		Map<String, FileJson> files = null;
 		
-		final Map<String, FileJson> files = object.get("files") //
-				.getAsJsonObject() //
-				.entrySet() //
-				.stream() //
-				.collect(Collectors.toMap(Entry::getKey, entry -> context.deserialize(entry.getValue(), FileJson.class)));
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("files")) {
+				files = readFiles(reader);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		if (files == null) {
+			throw new JsonParseException("Java runtime index has no files");
+		}
 		
 		return new CurrentJavaVersionJson(files);
 	}
 	
+	private Map<String, FileJson> readFiles(JsonReader reader) throws IOException {
+		final Map<String, FileJson> files = new LinkedHashMap<>();
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				files.put(name, null);
+			} else {
+				files.put(name, readFile(reader));
+			}
+		}
+		reader.endObject();
+		
+		return files;
+	}
+	
+	private FileJson readFile(JsonReader reader) throws IOException {
+		DownloadsJson downloads = null;
+		boolean executable = false;
+		String type = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "downloads" -> downloads = readDownloads(reader);
+			case "executable" -> executable = reader.nextBoolean();
+			case "type" -> type = reader.nextString();
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		return new FileJson(downloads, executable, type);
+	}
+	
+	private DownloadsJson readDownloads(JsonReader reader) throws IOException {
+		DownloadJson lzma = null;
+		DownloadJson raw = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "lzma" -> lzma = readDownload(reader);
+			case "raw" -> raw = readDownload(reader);
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		return new DownloadsJson(lzma, raw);
+	}
+	
+	private DownloadJson readDownload(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		
+		String sha1 = null;
+		int size = 0;
+		String url = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "sha1" -> sha1 = reader.nextString();
+			case "size" -> size = reader.nextInt();
+			case "url" -> url = reader.nextString();
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		return new DownloadJson(sha1, size, url);
+	}
+	
 }
@@ -0,0 +1,274 @@
+package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import net.hycrafthd.minecraft_downloader.mojang_api.JavaVersionManifestJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.JavaVersionManifestJson.PlatformJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.JavaVersionManifestJson.PlatformJson.JavaRuntimeJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.JavaVersionManifestJson.PlatformJson.JavaRuntimeJson.AvailabilityJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.JavaVersionManifestJson.PlatformJson.JavaRuntimeJson.ManifestJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.JavaVersionManifestJson.PlatformJson.JavaRuntimeJson.VersionJson;
+
+/**
+ * Reads the java version manifest directly from the stream without using reflection. Unknown platforms and runtimes
+ * are skipped.
+ */
+public class JavaVersionManifestSerializer extends TypeAdapter<JavaVersionManifestJson> {
+	
+	@Override
+	public void write(JsonWriter writer, JavaVersionManifestJson manifest) throws IOException {
+		writer.beginObject();
+		writePlatform(writer, "gamecore", manifest.getGamecore());
+		writePlatform(writer, "linux", manifest.getLinux());
+		writePlatform(writer, "linux-i386", manifest.getLinuxI386());
+		writePlatform(writer, "mac-os", manifest.getMacOs());
+		writePlatform(writer, "mac-os-arm64", manifest.getMacOsArm64());
+		writePlatform(writer, "windows-x64", manifest.getWindowsX64());
+		writePlatform(writer, "windows-x86", manifest.getWindowsX86());
+		writer.endObject();
+	}
+	
+	private void writePlatform(JsonWriter writer, String name, PlatformJson platform) throws IOException {
+		if (platform == null) {
+			return;
+		}
+		
+		writer.name(name).beginObject();
+		writeRuntimes(writer, "java-runtime-alpha", platform.getJavaRuntimeAlpha());
+		writeRuntimes(writer, "java-runtime-beta", platform.getJavaRuntimeBeta());
+		writeRuntimes(writer, "java-runtime-gamma", platform.getJavaRuntimeGamma());
+		writeRuntimes(writer, "jre-legacy", platform.getJreLegacy());
+		writeRuntimes(writer, "minecraft-java-exe", platform.getMinecraftJavaExe());
+		writer.endObject();
+	}
+	
+	private void writeRuntimes(JsonWriter writer, String name, ArrayList<JavaRuntimeJson> runtimes) throws IOException {
+		if (runtimes == null) {
+			return;
+		}
+		
+		writer.name(name).beginArray();
+		for (final JavaRuntimeJson runtime : runtimes) {
+			writeRuntime(writer, runtime);
+		}
+		writer.endArray();
+	}
+	
+	private void writeRuntime(JsonWriter writer, JavaRuntimeJson runtime) throws IOException {
+		if (runtime == null) {
+			writer.nullValue();
+			return;
+		}
+		
+		writer.beginObject();
+		
+		final AvailabilityJson availability = runtime.getAvailability();
+		if (availability != null) {
+			writer.name("availability").beginObject();
+			writer.name("group").value(availability.getGroup());
+			writer.name("progress").value(availability.getProgress());
+			writer.endObject();
+		}
+		
+		final ManifestJson manifest = runtime.getManifest();
+		if (manifest != null) {
+			writer.name("manifest").beginObject();
+			if (manifest.getSha1() != null) {
+				writer.name("sha1").value(manifest.getSha1());
+			}
+			writer.name("size").value(manifest.getSize());
+			if (manifest.getUrl() != null) {
+				writer.name("url").value(manifest.getUrl());
+			}
+			writer.endObject();
+		}
+		
+		final VersionJson version = runtime.getVersion();
+		if (version != null) {
+			writer.name("version").beginObject();
+			if (version.getName() != null) {
+				writer.name("name").value(version.getName());
+			}
+			if (version.getReleased() != null) {
+				writer.name("released").value(version.getReleased());
+			}
+			writer.endObject();
+		}
+		
+		writer.endObject();
+	}
+	
+	@Override
+	public JavaVersionManifestJson read(JsonReader reader) throws IOException {
+		PlatformJson gamecore = null;
+		PlatformJson linux = null;
+		PlatformJson linuxI386 = null;
+		PlatformJson macOs = null;
+		PlatformJson macOsArm64 = null;
+		PlatformJson windowsX64 = null;
+		PlatformJson windowsX86 = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "gamecore" -> gamecore = readPlatform(reader);
+			case "linux" -> linux = readPlatform(reader);
+			case "linux-i386" -> linuxI386 = readPlatform(reader);
+			case "mac-os" -> macOs = readPlatform(reader);
+			case "mac-os-arm64" -> macOsArm64 = readPlatform(reader);
+			case "windows-x64" -> windowsX64 = readPlatform(reader);
+			case "windows-x86" -> windowsX86 = readPlatform(reader);
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		return new JavaVersionManifestJson(gamecore, linux, linuxI386, macOs, macOsArm64, windowsX64, windowsX86);
+	}
+	
+	private PlatformJson readPlatform(JsonReader reader) throws IOException {
+		if (isNull(reader)) {
+			return null;
+		}
+		
+		ArrayList<JavaRuntimeJson> javaRuntimeAlpha = null;
+		ArrayList<JavaRuntimeJson> javaRuntimeBeta = null;
+		ArrayList<JavaRuntimeJson> javaRuntimeGamma = null;
+		ArrayList<JavaRuntimeJson> jreLegacy = null;
+		ArrayList<JavaRuntimeJson> minecraftJavaExe = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "java-runtime-alpha" -> javaRuntimeAlpha = readRuntimes(reader);
+			case "java-runtime-beta" -> javaRuntimeBeta = readRuntimes(reader);
+			case "java-runtime-gamma" -> javaRuntimeGamma = readRuntimes(reader);
+			case "jre-legacy" -> jreLegacy = readRuntimes(reader);
+			case "minecraft-java-exe" -> minecraftJavaExe = readRuntimes(reader);
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		return new PlatformJson(javaRuntimeAlpha, javaRuntimeBeta, javaRuntimeGamma, jreLegacy, minecraftJavaExe);
+	}
+	
+	private ArrayList<JavaRuntimeJson> readRuntimes(JsonReader reader) throws IOException {
+		if (isNull(reader)) {
+			return null;
+		}
+		
+		final ArrayList<JavaRuntimeJson> runtimes = new ArrayList<>();
+		
+		reader.beginArray();
+		while (reader.hasNext()) {
+			runtimes.add(readRuntime(reader));
+		}
+		reader.endArray();
+		
+		return runtimes;
+	}
+	
+	private JavaRuntimeJson readRuntime(JsonReader reader) throws IOException {
+		if (isNull(reader)) {
+			return null;
+		}
+		
+		AvailabilityJson availability = null;
+		ManifestJson manifest = null;
+		VersionJson version = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "availability" -> availability = readAvailability(reader);
+			case "manifest" -> manifest = readManifest(reader);
+			case "version" -> version = readVersion(reader);
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		return new JavaRuntimeJson(availability, manifest, version);
+	}
+	
+	private AvailabilityJson readAvailability(JsonReader reader) throws IOException {
+		if (isNull(reader)) {
+			return null;
+		}
+		
+		int group = 0;
+		int progress = 0;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "group" -> group = reader.nextInt();
+			case "progress" -> progress = reader.nextInt();
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		return new AvailabilityJson(group, progress);
+	}
+	
+	private ManifestJson readManifest(JsonReader reader) throws IOException {
+		if (isNull(reader)) {
+			return null;
+		}
+		
+		String sha1 = null;
+		int size = 0;
+		String url = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "sha1" -> sha1 = reader.nextString();
+			case "size" -> size = reader.nextInt();
+			case "url" -> url = reader.nextString();
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		return new ManifestJson(sha1, size, url);
+	}
+	
+	private VersionJson readVersion(JsonReader reader) throws IOException {
+		if (isNull(reader)) {
+			return null;
+		}
+		
+		String name = null;
+		String released = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "name" -> name = reader.nextString();
+			case "released" -> released = reader.nextString();
+			default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		return new VersionJson(name, released);
+	}
+	
+	private boolean isNull(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return true;
+		}
+		return false;
+	}
+	
+}
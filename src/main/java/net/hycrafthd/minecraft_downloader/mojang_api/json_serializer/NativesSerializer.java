@@ -1,42 +1,40 @@
 package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.stream.Collectors;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.LibraryJson.NativesJson;
 
-public class NativesSerializer implements JsonDeserializer<NativesJson>, JsonSerializer<NativesJson> {
+/**
+ * Reads the native classifier of every operating system directly from the stream
+ */
+public class NativesSerializer extends TypeAdapter<NativesJson> {
 	
 	@Override
-	public JsonElement serialize(NativesJson natives, Type typeOfSrc, JsonSerializationContext context) {
-		final JsonObject json = new JsonObject();
-		
-		natives.getNatives() //
-				.entrySet() //
-				.stream() //
-				.forEach(entry -> {
-					json.addProperty(entry.getKey(), entry.getValue());
-				});
-		
-		return json;
+	public void write(JsonWriter writer, NativesJson natives) throws IOException {
+		writer.beginObject();
+		for (final Entry<String, String> entry : natives.getNatives().entrySet()) {
+			writer.name(entry.getKey()).value(entry.getValue());
+		}
+		writer.endObject();
 	}
 	
 	@Override
-	public NativesJson deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-		final Map<String, String> natives = json.getAsJsonObject() //
-				.entrySet() //
-				.stream() //
-				.collect(Collectors.toMap(Entry::getKey, entry -> entry.getValue().getAsString()));
+	public NativesJson read(JsonReader reader) throws IOException {
+		final Map<String, String> natives = new HashMap<>();
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			natives.put(reader.nextName(), ValueSerializer.nextString(reader));
+		}
+		reader.endObject();
+		
 		return new NativesJson(natives);
 	}
 	
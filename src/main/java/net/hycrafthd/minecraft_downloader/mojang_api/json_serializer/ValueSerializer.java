@@ -1,45 +1,60 @@
 package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.ArrayList;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.ArgumentsJson.ValueJson;
 
-public class ValueSerializer implements JsonDeserializer<ValueJson>, JsonSerializer<ValueJson> {
+/**
+ * Reads an argument value, which is either a single string or an array of strings, directly from the stream
+ */
+public class ValueSerializer extends TypeAdapter<ValueJson> {
 	
 	@Override
-	public JsonElement serialize(ValueJson value, Type typeOfSrc, JsonSerializationContext context) {
+	public void write(JsonWriter writer, ValueJson value) throws IOException {
 		final ArrayList<String> values = value.getValue();
 		
 		if (values.size() == 1) {
-			return new JsonPrimitive(values.get(0));
+			writer.value(values.get(0));
 		} else {
-			final JsonArray json = new JsonArray();
-			values.forEach(json::add);
-			return json;
+			writer.beginArray();
+			for (final String element : values) {
+				writer.value(element);
+			}
+			writer.endArray();
 		}
 	}
 	
 	@Override
-	public ValueJson deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-		final ArrayList<String> value = new ArrayList<String>();
+	public ValueJson read(JsonReader reader) throws IOException {
+		final ArrayList<String> value = new ArrayList<>();
 		
-		if (json.isJsonArray()) {
-			json.getAsJsonArray().forEach(element -> value.add(element.getAsString()));
+		if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+			reader.beginArray();
+			while (reader.hasNext()) {
+				value.add(nextString(reader));
+			}
+			reader.endArray();
 		} else {
-			value.add(json.getAsString());
+			value.add(nextString(reader));
 		}
 		
 		return new ValueJson(value);
 	}
 	
+	/**
+	 * Read any primitive as string like {@link com.google.gson.JsonElement#getAsString()} does
+	 */
+	static String nextString(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.BOOLEAN) {
+			return Boolean.toString(reader.nextBoolean());
+		}
+		return reader.nextString();
+	}
+	
 }
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Set;
 
 import net.hycrafthd.minecraft_downloader.library.DownloadableFile;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson;
 import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson;
 
 public class GeneratedSettings {
@@ -15,6 +16,8 @@ public class GeneratedSettings {
 
 	private List<DownloadableFile> downloadableFiles;
 
+	private CurrentAssetIndexJson assetIndex;
+
 	private File virtualAssets;
 
 	private File logFile;
@@ -53,6 +56,20 @@ public class GeneratedSettings {
 		return downloadableFiles;
 	}
 
+	public void setAssetIndex(CurrentAssetIndexJson assetIndex) {
+		if (this.assetIndex != null) {
+			throw new IllegalStateException("Asset index was already set");
+		}
+		this.assetIndex = assetIndex;
+	}
+
+	public CurrentAssetIndexJson getAssetIndex() {
+		if (assetIndex == null) {
+			throw new IllegalStateException("Asset index is not set");
+		}
+		return assetIndex;
+	}
+
 	public void setVirtualAssets(File virtualAssets) {
 		if (this.virtualAssets != null) {
 			throw new IllegalStateException("Virtual assets was already set");
@@ -1,12 +1,13 @@
 package net.hycrafthd.minecraft_downloader.settings;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.hycrafthd.minecraft_downloader.Constants;
 import net.hycrafthd.minecraft_downloader.util.FileUtil;
@@ -51,8 +52,9 @@ public class ProvidedSettings {
 		runDirectoryOptional = Optional.ofNullable(runDirectory);
 		
 		generatedSettings = new GeneratedSettings();
-		features = new HashSet<>();
-		variables = new HashMap<>();
+		// Provisioning tasks run concurrently and add features and variables at the same time
+		features = ConcurrentHashMap.newKeySet();
+		variables = Collections.synchronizedMap(new HashMap<>());
 	}
 	
 	public String getVersion() {
@@ -142,11 +144,13 @@ public class ProvidedSettings {
 	public String replaceVariable(String string) {
 		String output = string;
 		
-		for (final Entry<LauncherVariables, String> entry : variables.entrySet()) {
-			final LauncherVariables variable = entry.getKey();
-			final String value = entry.getValue();
-			
-			output = variable.replaceVariable(output, value);
+		synchronized (variables) {
+			for (final Entry<LauncherVariables, String> entry : variables.entrySet()) {
+				final LauncherVariables variable = entry.getKey();
+				final String value = entry.getValue();
+				
+				output = variable.replaceVariable(output, value);
+			}
 		}
 		
 		return output;
@@ -2,38 +2,62 @@ package net.hycrafthd.minecraft_downloader.util;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.MalformedJsonException;
 
 import net.hycrafthd.minecraft_authenticator.util.function.FunctionWithIOException;
+import net.hycrafthd.minecraft_downloader.Constants;
 import net.hycrafthd.minecraft_downloader.Main;
+import net.hycrafthd.minecraft_downloader.download.ArtifactStore;
+import net.hycrafthd.minecraft_downloader.download.BufferPool;
+import net.hycrafthd.minecraft_downloader.download.ChunkedDownload;
+import net.hycrafthd.minecraft_downloader.download.DownloadEngine;
+import net.hycrafthd.minecraft_downloader.download.DownloadResponse;
+import net.hycrafthd.minecraft_downloader.download.FileSync;
+import net.hycrafthd.minecraft_downloader.download.Hedging;
+import net.hycrafthd.minecraft_downloader.download.InvalidContentException;
+import net.hycrafthd.minecraft_downloader.download.MetadataCache;
+import net.hycrafthd.minecraft_downloader.download.RetryPolicy;
+import net.hycrafthd.minecraft_downloader.download.SingleFlight;
+import net.hycrafthd.minecraft_downloader.download.VerificationJournal;
+import net.hycrafthd.minecraft_downloader.download.VerifyMode;
 
 public class FileUtil {
 	
 	private static final byte[] HEX_ARRAY = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
 	
+	public static final String PART_FILE_EXTENSION = ".part";
+	
 	public static String downloadText(String url) throws IOException {
-		final URLConnection urlConnection = new URL(url).openConnection();
-		urlConnection.setConnectTimeout(15000);
-		urlConnection.setReadTimeout(15000);
-		urlConnection.connect();
-		
-		return readText(urlConnection.getInputStream());
+		return MetadataCache.get(url);
 	}
 	
 	public static void downloadFileException(String url, File output, int expectedSize, String expectedSha1, String exception) {
@@ -49,49 +73,364 @@ public class FileUtil {
 	}
 	
 	public static void downloadFile(String url, File output, Integer expectedSize, String expectedSha1) throws IOException {
-		downloadFile(url, output, expectedSize, expectedSha1, inputStream -> inputStream);
+		downloadFile(url, output, expectedSize, expectedSha1, null, true);
+	}
+	
+	public static void downloadFile(String url, File output, Integer expectedSize, String expectedSha1, boolean useArtifactStore) throws IOException {
+		downloadFile(url, output, expectedSize, expectedSha1, null, useArtifactStore);
 	}
 	
 	public static void downloadFile(String url, File output, Integer expectedSize, String expectedSha1, FunctionWithIOException<InputStream, InputStream> streamMapper) throws IOException {
+		downloadFile(url, output, expectedSize, expectedSha1, streamMapper, streamMapper == null);
+	}
+	
+	/**
+	 * Download a file to the output. The data is written to a part file first which is moved to the output when the
+	 * download is complete. If no stream mapper is used, an existing part file of an interrupted download is resumed with
+	 * a range request. If the artifact store is used, files with a known SHA-1 are taken from the store and added to it
+	 * after the download. Concurrent downloads to the same output share one transfer. Failed transfers are retried with
+	 * the {@link RetryPolicy} and continue from the part file.
+	 */
+	private static void downloadFile(String url, File output, Integer expectedSize, String expectedSha1, FunctionWithIOException<InputStream, InputStream> streamMapper, boolean useArtifactStore) throws IOException {
+		SingleFlight.run(output, () -> RetryPolicy.run(url, () -> {
+			transferFile(url, output, expectedSize, expectedSha1, streamMapper, useArtifactStore);
+			return null;
+		}));
+	}
+	
+	private static void transferFile(String url, File output, Integer expectedSize, String expectedSha1, FunctionWithIOException<InputStream, InputStream> streamMapper, boolean useArtifactStore) throws IOException {
 		Main.LOGGER.debug("Try to download file from {} to {}", url, output);
 		
+		if (checkFileVerified(output, expectedSize, expectedSha1)) {
+			Main.LOGGER.debug("File {} already downloaded and verified", output);
+			return;
+		}
+		
 		final MessageDigest digest = createSha1Digest();
+		final byte[] expectedDigest = expectedSha1 == null ? null : hexToBytes(expectedSha1);
 		
-		if (checkFile(output)) {
-			final boolean sizeCheck;
-			if (expectedSize != null) {
-				sizeCheck = checkFileSize(output, expectedSize);
-			} else {
-				sizeCheck = true;
-			}
+		final boolean knownSize = expectedSize != null && expectedSize >= 0;
+		final boolean storeArtifact = useArtifactStore && expectedSha1 != null && ArtifactStore.isEnabled();
+		
+		if (storeArtifact && ArtifactStore.restore(expectedSha1, knownSize ? expectedSize : -1, output)) {
+			VerificationJournal.record(output, expectedSha1);
+			return;
+		}
+		
+		if (DownloadEngine.isOffline()) {
+			throw new IOException("File " + output + " is missing or invalid and cannot be downloaded from " + url + " in offline mode");
+		}
+		
+		createParentFolders(output);
+		
+		final File partFile = getPartFile(output);
+		
+		long offset = 0;
+		
+		// Chunked downloads keep track of their completed ranges and resume them on their own
+		final boolean resumeChunks = streamMapper == null && ChunkedDownload.isChunked(expectedSize) && ChunkedDownload.canResume(partFile);
+		
+		if (streamMapper == null && !resumeChunks && checkFile(partFile)) {
+			final long partSize = partFile.length();
 			
-			if (sizeCheck && expectedSha1 != null && checkFileSha1(digest, output, expectedSha1)) {
-				Main.LOGGER.debug("File {} already downloaded and verified", output);
-				return;
+			if (partSize > 0 && (!knownSize || partSize <= expectedSize)) {
+				// Restore the digest state of the already downloaded bytes
+				updateDigest(digest, partFile);
+				
+				if (knownSize && partSize == expectedSize && expectedDigest != null && digestMatches(cloneDigest(digest), expectedDigest)) {
+					Main.LOGGER.debug("Part file {} is already complete", partFile);
+					moveFile(partFile, output);
+					VerificationJournal.record(output, expectedSha1);
+					if (storeArtifact) {
+						ArtifactStore.store(expectedSha1, output);
+					}
+					return;
+				}
+				
+				if (!knownSize || partSize < expectedSize) {
+					offset = partSize;
+				} else {
+					digest.reset();
+				}
+			}
+		}
+		
+		if (streamMapper == null && knownSize && Hedging.isHedgeable(expectedSize)) {
+			// Small files are watched, so a slow transfer can be raced by a hedged request
+			Hedging.download(url, partFile, offset, digest);
+		} else if (offset == 0 && streamMapper == null && ChunkedDownload.isChunked(expectedSize)) {
+			// Large files are split into ranges that are downloaded in parallel
+			ChunkedDownload.download(url, partFile, expectedSize, digest);
+		} else {
+			streamFile(url, output, partFile, offset, digest, streamMapper);
+		}
+		
+		if (expectedDigest != null) {
+			if (!digestMatches(digest, expectedDigest)) {
+				partFile.delete();
+				throw new InvalidContentException("SHA1 signature of " + url + " does not match the expected one");
 			}
 		}
 		
-		final URLConnection urlConnection = new URL(url).openConnection();
-		urlConnection.setConnectTimeout(15000);
-		urlConnection.setReadTimeout(15000);
-		urlConnection.connect();
+		moveFile(partFile, output);
+		
+		if (expectedSha1 != null) {
+			VerificationJournal.record(output, expectedSha1);
+		}
+		
+		if (storeArtifact) {
+			ArtifactStore.store(expectedSha1, output);
+		}
+		
+		Main.LOGGER.debug("Finished to download file {}", output);
+	}
+	
+	/**
+	 * Download a json file and parse it in the same pass. The response is written to the part file and the digest while
+	 * gson reads it, so the file does not have to be read again. The part file is only moved to the output if the SHA-1
+	 * matches. A file that is already downloaded and verified is parsed from the disk.
+	 */
+	public static <T> T downloadJson(String url, File output, Integer expectedSize, String expectedSha1, Class<T> type) throws IOException {
+		final AtomicReference<T> result = new AtomicReference<>();
+		
+		SingleFlight.run(output, () -> RetryPolicy.run(url, () -> {
+			result.set(transferJson(url, output, expectedSize, expectedSha1, type));
+			return null;
+		}));
+		
+		// Another thread downloaded the same file
+		if (result.get() == null) {
+			return readJson(output, type);
+		}
+		return result.get();
+	}
+	
+	private static <T> T transferJson(String url, File output, Integer expectedSize, String expectedSha1, Class<T> type) throws IOException {
+		if (checkFileVerified(output, expectedSize, expectedSha1)) {
+			Main.LOGGER.debug("Json {} already downloaded and verified", output);
+			return readJson(output, type);
+		}
+		
+		final boolean knownSize = expectedSize != null && expectedSize >= 0;
+		final boolean storeArtifact = expectedSha1 != null && ArtifactStore.isEnabled();
+		
+		if (storeArtifact && ArtifactStore.restore(expectedSha1, knownSize ? expectedSize : -1, output)) {
+			VerificationJournal.record(output, expectedSha1);
+			return readJson(output, type);
+		}
+		
+		if (DownloadEngine.isOffline()) {
+			throw new IOException("Json " + output + " is missing or invalid and cannot be downloaded from " + url + " in offline mode");
+		}
 		
 		createParentFolders(output);
 		
-		final byte buffer[] = new byte[8192];
+		final File partFile = getPartFile(output);
+		final MessageDigest digest = createSha1Digest();
+		
+		final T result;
+		
+		try (final DownloadResponse response = DownloadEngine.open(url, 0); //
+				final OutputStream outputStream = new FileOutputStream(partFile); //
+				final InputStream inputStream = new DigestInputStream(new TeeInputStream(response.inputStream(), outputStream), digest)) {
+			result = parseJson(inputStream, type);
+			// Read what the parser left, so the part file and the digest contain the whole document
+			inputStream.transferTo(OutputStream.nullOutputStream());
+		} catch (final IOException ex) {
+			partFile.delete();
+			throw ex;
+		} catch (final JsonParseException ex) {
+			partFile.delete();
+			throw new InvalidContentException("Invalid json received from " + url, ex);
+		}
 		
-		try (final InputStream inputStream = streamMapper.apply(new DigestInputStream(urlConnection.getInputStream(), digest)); //
-				final OutputStream outputStream = new FileOutputStream(output)) {
-			copy(inputStream, outputStream, buffer);
+		if (expectedSha1 != null && !digestMatches(digest, hexToBytes(expectedSha1))) {
+			partFile.delete();
+			throw new InvalidContentException("SHA1 signature of " + url + " does not match the expected one");
 		}
 		
+		if (result == null) {
+			partFile.delete();
+			throw new IOException("Empty json received from " + url);
+		}
+		
+		moveFile(partFile, output);
+		
 		if (expectedSha1 != null) {
-			if (!bytesToHex(digest.digest()).equals(expectedSha1)) {
-				throw new IllegalStateException("SHA1 signature does not match the expected one");
+			VerificationJournal.record(output, expectedSha1);
+		}
+		
+		if (storeArtifact) {
+			ArtifactStore.store(expectedSha1, output);
+		}
+		
+		Main.LOGGER.debug("Finished to download and parse json {}", output);
+		
+		return result;
+	}
+	
+	/**
+	 * Parse json from a stream. Gson wraps failures of the stream in a {@link JsonParseException}, they are unwrapped
+	 * here so a broken transfer is not mistaken for invalid content. Malformed or truncated json is still reported as
+	 * {@link JsonParseException}.
+	 */
+	public static <T> T parseJson(InputStream inputStream, Class<T> type) throws IOException {
+		try {
+			return Constants.GSON.fromJson(Constants.GSON.newJsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)), type);
+		} catch (final JsonParseException ex) {
+			// The json reader reports syntax errors and the end of the document as io exceptions too
+			if (ex.getCause() instanceof IOException ioException && !(ioException instanceof MalformedJsonException) && !(ioException instanceof EOFException)) {
+				throw ioException;
 			}
+			throw ex;
 		}
+	}
+	
+	/**
+	 * Parse a json file without reading it into a string first
+	 */
+	public static <T> T readJson(File file, Class<T> type) throws IOException {
+		try (final Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			return Constants.GSON.fromJson(reader, type);
+		}
+	}
+	
+	private static void streamFile(String url, File output, File partFile, long offset, MessageDigest digest, FunctionWithIOException<InputStream, InputStream> streamMapper) throws IOException {
+		try (final DownloadResponse response = DownloadEngine.open(url, offset)) {
+			if (offset > 0) {
+				if (response.isPartial()) {
+					Main.LOGGER.debug("Resume download of {} at byte {}", output, offset);
+				} else {
+					Main.LOGGER.debug("Server does not support resuming the download of {}. Start from the beginning", output);
+					offset = 0;
+					digest.reset();
+				}
+			}
+			
+			if (streamMapper == null) {
+				try (final InputStream inputStream = response.inputStream(); //
+						final FileChannel fileChannel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, offset > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+					transfer(inputStream, fileChannel, digest);
+				}
+			} else {
+				try (final InputStream inputStream = streamMapper.apply(new DigestInputStream(response.inputStream(), digest)); //
+						final OutputStream outputStream = new FileOutputStream(partFile, offset > 0)) {
+					copy(inputStream, outputStream, new byte[8192]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Copy the stream to the end of the file channel and update the digest in the same pass. The stream reads directly
+	 * into the array of a pooled buffer, so no memory is allocated per file and the data is not copied through a
+	 * channel adapter.
+	 */
+	public static void transfer(InputStream source, FileChannel target, MessageDigest digest) throws IOException {
+		final ByteBuffer buffer = BufferPool.acquire();
+		final byte[] array = buffer.array();
+		try {
+			int read;
+			while ((read = source.read(array, 0, array.length)) >= 0) {
+				digest.update(array, 0, read);
+				buffer.clear().limit(read);
+				while (buffer.hasRemaining()) {
+					target.write(buffer);
+				}
+			}
+		} finally {
+			BufferPool.release(buffer);
+		}
+	}
+	
+	public static File getPartFile(File file) {
+		return new File(file.getParentFile(), file.getName() + PART_FILE_EXTENSION);
+	}
+	
+	public static void moveFile(File source, File target) throws IOException {
+		FileSync.beforeMove(source);
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final AtomicMoveNotSupportedException ex) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		FileSync.afterMove(target);
+	}
+	
+	/**
+	 * Write a file through a part file which is moved into place once the writer finished. A file that exists is
+	 * therefore always complete, even if the process was killed while writing.
+	 */
+	public static void writeFile(File file, OutputWriter writer) throws IOException {
+		createParentFolders(file);
 		
-		Main.LOGGER.debug("Finished to download file {}", output);
+		final File partFile = getPartFile(file);
+		
+		try (final OutputStream outputStream = new FileOutputStream(partFile)) {
+			writer.write(outputStream);
+		} catch (final IOException | RuntimeException ex) {
+			partFile.delete();
+			throw ex;
+		}
+		
+		moveFile(partFile, file);
+	}
+	
+	/**
+	 * Place the source at the target with a hard link. If the file system does not support hard links, the file is
+	 * copied.
+	 */
+	public static void linkFile(File source, File target) throws IOException {
+		createParentFolders(target);
+		
+		final File partFile = getPartFile(target);
+		Files.deleteIfExists(partFile.toPath());
+		linkOrCopy(source.toPath(), partFile.toPath());
+		moveFile(partFile, target);
+	}
+	
+	public static void linkOrCopy(Path source, Path target) throws IOException {
+		try {
+			Files.createLink(target, source);
+		} catch (final IOException | UnsupportedOperationException ex) {
+			Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+		}
+	}
+	
+	public static void copyFile(File source, File target) throws IOException {
+		writeFile(target, outputStream -> {
+			Files.copy(source.toPath(), outputStream);
+		});
+	}
+	
+	/**
+	 * Check if the file exists and matches the expected size and SHA-1. Files that did not change since they were last
+	 * verified are not hashed again, see {@link VerificationJournal}.
+	 */
+	public static boolean checkFileVerified(File file, Integer expectedSize, String expectedSha1) throws IOException {
+		if (expectedSha1 == null || !checkFile(file)) {
+			return false;
+		}
+		
+		if (expectedSize != null && !checkFileSize(file, expectedSize)) {
+			return false;
+		}
+		
+		// Files are only moved into place when they are complete, so the size is enough in this mode
+		if (expectedSize != null && VerificationJournal.getMode() == VerifyMode.SIZE) {
+			return true;
+		}
+		
+		if (VerificationJournal.isVerified(file, expectedSha1)) {
+			return true;
+		}
+		
+		if (checkFileSha1(file, expectedSha1)) {
+			VerificationJournal.record(file, expectedSha1);
+			return true;
+		}
+		
+		return false;
 	}
 	
 	public static boolean checkFile(File file) {
@@ -107,16 +446,47 @@ public class FileUtil {
 	}
 	
 	public static boolean checkFileSha1(MessageDigest digest, File file, String expectedSha1) throws IOException {
-		final byte buffer[] = new byte[8192];
+		updateDigest(digest, file);
 		
-		try (final InputStream inputStream = new FileInputStream(file)) {
-			int count;
-			while ((count = inputStream.read(buffer)) != -1) {
-				digest.update(buffer, 0, count);
+		return digestMatches(digest, hexToBytes(expectedSha1));
+	}
+	
+	public static boolean checkFileCrc32(File file, long expectedCrc) throws IOException {
+		final CRC32 crc = new CRC32();
+		final ByteBuffer buffer = BufferPool.acquire();
+		
+		try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
 			}
+		} finally {
+			BufferPool.release(buffer);
 		}
 		
-		return bytesToHex(digest.digest()).equals(expectedSha1);
+		return crc.getValue() == expectedCrc;
+	}
+	
+	public static void updateDigest(MessageDigest digest, File file) throws IOException {
+		final ByteBuffer buffer = BufferPool.acquire();
+		
+		try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		} finally {
+			BufferPool.release(buffer);
+		}
+	}
+	
+	/**
+	 * Finish the digest and compare it with the expected raw digest
+	 */
+	public static boolean digestMatches(MessageDigest digest, byte[] expectedDigest) {
+		return MessageDigest.isEqual(digest.digest(), expectedDigest);
 	}
 	
 	public static String readText(File file) throws IOException {
@@ -132,10 +502,20 @@ public class FileUtil {
 	}
 	
 	public static void writeText(Stream<String> textLines, File file) throws IOException {
-		createParentFolders(file);
-		try (final PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+		writeFile(file, outputStream -> {
+			final PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
 			textLines.forEach(writer::println);
-		}
+			writer.flush();
+			if (writer.checkError()) {
+				throw new IOException("Could not write text to file " + file);
+			}
+		});
+	}
+	
+	public static void writeText(String text, File file) throws IOException {
+		writeFile(file, outputStream -> {
+			outputStream.write(text.getBytes(StandardCharsets.UTF_8));
+		});
 	}
 	
 	public static void createParentFolders(File file) {
@@ -171,6 +551,30 @@ public class FileUtil {
 		}
 	}
 	
+	private static MessageDigest cloneDigest(MessageDigest digest) {
+		try {
+			return (MessageDigest) digest.clone();
+		} catch (final CloneNotSupportedException ex) {
+			throw new IllegalStateException("SHA1 digest cannot be cloned", ex);
+		}
+	}
+	
+	public static byte[] hexToBytes(String hex) {
+		if (hex.length() % 2 != 0) {
+			throw new IllegalArgumentException("Invalid hex string " + hex);
+		}
+		final byte[] bytes = new byte[hex.length() / 2];
+		for (int index = 0; index < bytes.length; index++) {
+			final int high = Character.digit(hex.charAt(index * 2), 16);
+			final int low = Character.digit(hex.charAt(index * 2 + 1), 16);
+			if (high < 0 || low < 0) {
+				throw new IllegalArgumentException("Invalid hex string " + hex);
+			}
+			bytes[index] = (byte) (high << 4 | low);
+		}
+		return bytes;
+	}
+	
 	public static String bytesToHex(byte[] bytes) {
 		final byte[] hexChars = new byte[bytes.length * 2];
 		for (int index = 0; index < bytes.length; index++) {
@@ -181,4 +585,41 @@ public class FileUtil {
 		return new String(hexChars, StandardCharsets.UTF_8);
 	}
 	
+	/**
+	 * Input stream that writes every byte that is read to the output stream
+	 */
+	private static class TeeInputStream extends FilterInputStream {
+		
+		private final OutputStream outputStream;
+		
+		private TeeInputStream(InputStream inputStream, OutputStream outputStream) {
+			super(inputStream);
+			this.outputStream = outputStream;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			final int value = super.read();
+			if (value >= 0) {
+				outputStream.write(value);
+			}
+			return value;
+		}
+		
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			final int read = super.read(buffer, offset, length);
+			if (read > 0) {
+				outputStream.write(buffer, offset, read);
+			}
+			return read;
+		}
+	}
+	
+	@FunctionalInterface
+	public interface OutputWriter {
+		
+		void write(OutputStream outputStream) throws IOException;
+	}
+	
 }
@@ -0,0 +1,88 @@
+package net.hycrafthd.minecraft_downloader.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import net.hycrafthd.minecraft_downloader.Main;
+
+/**
+ * Graph of tasks with explicit dependencies. Every task runs on its own virtual thread as soon as all tasks it depends
+ * on are finished. If a task fails, the tasks that depend on it are not run.
+ */
+public class TaskGraph {
+	
+	/**
+	 * Task that is already finished. Can be used as dependency for tasks that are not needed.
+	 */
+	public static final Task COMPLETED = new Task("completed", CompletableFuture.completedFuture(null));
+	
+	private final ThreadFactory threadFactory = Thread.ofVirtual().name("Task-", 0).factory();
+	private final Executor executor = command -> threadFactory.newThread(command).start();
+	
+	private final List<Task> tasks = new ArrayList<>();
+	
+	public synchronized Task add(String name, Runnable action, Task... dependencies) {
+		final CompletableFuture<?>[] dependencyFutures = Stream.of(dependencies).map(Task::future).toArray(CompletableFuture[]::new);
+		
+		final CompletableFuture<Void> future = CompletableFuture.allOf(dependencyFutures).thenRunAsync(() -> {
+			Main.LOGGER.debug("Start task {}", name);
+			final long start = System.nanoTime();
+			action.run();
+			Main.LOGGER.debug("Finished task {} in {} ms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}, executor);
+		
+		final Task task = new Task(name, future);
+		tasks.add(task);
+		return task;
+	}
+	
+	/**
+	 * Wait until all tasks are finished. The first failure is thrown with all other failures added as suppressed.
+	 * Failures of dependencies are only reported once by the task that failed.
+	 */
+	public void join() {
+		final List<Task> tasks;
+		synchronized (this) {
+			tasks = new ArrayList<>(this.tasks);
+		}
+		
+		final List<Throwable> failures = new ArrayList<>();
+		
+		for (final Task task : tasks) {
+			try {
+				task.future().join();
+			} catch (final CompletionException ex) {
+				final Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+				if (failures.stream().noneMatch(failure -> failure == cause)) {
+					failures.add(cause);
+					Main.LOGGER.debug("Task {} failed", task.name(), cause);
+				}
+			}
+		}
+		
+		if (failures.isEmpty()) {
+			return;
+		}
+		
+		final RuntimeException exception = asRuntimeException(failures.get(0));
+		failures.stream().skip(1).forEach(exception::addSuppressed);
+		throw exception;
+	}
+	
+	private static RuntimeException asRuntimeException(Throwable throwable) {
+		if (throwable instanceof RuntimeException runtimeException) {
+			return runtimeException;
+		}
+		return new IllegalStateException("Task failed", throwable);
+	}
+	
+	public record Task(String name, CompletableFuture<Void> future) {
+	}
+	
+}
@@ -0,0 +1,39 @@
+package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
+
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Returns the reflective adapter for the classes even if they have a json adapter annotation, so the streaming
+ * serializers can be compared with the reflection based parsing they replaced. Gson skips the annotation factory if the
+ * delegate lookup starts from a factory that is not registered.
+ */
+public class ReflectiveTypeAdapterFactory implements TypeAdapterFactory {
+	
+	private static final TypeAdapterFactory NOT_REGISTERED = new TypeAdapterFactory() {
+		
+		@Override
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+			return null;
+		}
+	};
+	
+	private final Set<Class<?>> classes;
+	
+	public ReflectiveTypeAdapterFactory(Class<?>... classes) {
+		this.classes = Set.of(classes);
+	}
+	
+	@Override
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		if (!classes.contains(type.getRawType())) {
+			return null;
+		}
+		return gson.getDelegateAdapter(NOT_REGISTERED, type);
+	}
+	
+}
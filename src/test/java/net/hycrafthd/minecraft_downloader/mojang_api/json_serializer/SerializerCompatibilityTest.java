@@ -0,0 +1,244 @@
+package net.hycrafthd.minecraft_downloader.mojang_api.json_serializer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+
+import net.hycrafthd.minecraft_downloader.Constants;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentAssetIndexJson.AssetJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.ArgumentsJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.ArgumentsJson.ValueJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.LibraryJson.DownloadsJson.ClassifiersJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentClientJson.LibraryJson.NativesJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson.FileJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson.FileJson.DownloadsJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson.FileJson.DownloadsJson.DownloadJson;
+import net.hycrafthd.minecraft_downloader.mojang_api.JavaVersionManifestJson;
+
+/**
+ * Compares the streaming serializers with the tree and reflection based parsing they replaced on checked in samples
+ */
+class SerializerCompatibilityTest {
+	
+	// Registered adapters take precedence over the json adapter annotation
+	static final Gson LEGACY_GSON = new GsonBuilder() //
+			.registerTypeAdapter(CurrentAssetIndexJson.class, new LegacyAssetIndexSerializer()) //
+			.registerTypeAdapter(CurrentJavaVersionJson.class, new LegacyJavaVersionSerializer()) //
+			.registerTypeAdapter(ArgumentsJson.class, new LegacyArgumentsSerializer()) //
+			.registerTypeAdapter(ValueJson.class, new LegacyValueSerializer()) //
+			.registerTypeAdapter(ClassifiersJson.class, new LegacyClassifiersSerializer()) //
+			.registerTypeAdapter(NativesJson.class, new LegacyNativesSerializer()) //
+			.registerTypeAdapterFactory(new ReflectiveTypeAdapterFactory(JavaVersionManifestJson.class)) //
+			.setPrettyPrinting() //
+			.disableHtmlEscaping() //
+			.create();
+	
+	@Test
+	void readAssetIndex() {
+		final String json = readResource("asset_index.json");
+		
+		final CurrentAssetIndexJson expected = LEGACY_GSON.fromJson(json, CurrentAssetIndexJson.class);
+		final CurrentAssetIndexJson actual = Constants.GSON.fromJson(json, CurrentAssetIndexJson.class);
+		
+		assertAssetIndexEquals(expected, actual);
+		// Names that share an object are stored once
+		assertEquals(expected.getAssets().size() - 2, actual.getIndex().getObjectCount());
+		
+		assertEquals(-1, actual.getIndex().indexOf("minecraft/sounds/missing.ogg"));
+		assertFalse(actual.getAssets().containsKey("minecraft/sounds/missing.ogg"));
+		assertNull(actual.getAssets().get("minecraft/sounds/missing.ogg"), "minecraft/sounds/missing.ogg");
+	}
+	
+	@Test
+	void readAssetIndexWithConflictingSizes() {
+		final String hash = "dc8c00e137c7af51a1d06bb04717eacffab44120";
+		final String json = "{\"objects\": {\"a.png\": {\"hash\": \"" + hash + "\", \"size\": 10}, \"b.png\": {\"hash\": \"" + hash + "\", \"size\": 20}}}";
+		
+		final CurrentAssetIndexJson assetIndex = Constants.GSON.fromJson(json, CurrentAssetIndexJson.class);
+		
+		assertEquals(1, assetIndex.getIndex().getObjectCount());
+		assertEquals(10, assetIndex.getAssets().get("a.png").getSize());
+		assertEquals(10, assetIndex.getAssets().get("b.png").getSize());
+	}
+	
+	@Test
+	void writeAssetIndex() {
+		final CurrentAssetIndexJson legacy = LEGACY_GSON.fromJson(readResource("asset_index.json"), CurrentAssetIndexJson.class);
+		
+		for (final boolean flag : new boolean[] { false, true }) {
+			final CurrentAssetIndexJson assetIndex = new CurrentAssetIndexJson(legacy.getAssets(), flag, flag);
+			
+			final String expected = LEGACY_GSON.toJson(assetIndex, CurrentAssetIndexJson.class);
+			final String actual = Constants.GSON.toJson(assetIndex, CurrentAssetIndexJson.class);
+			
+			assertEquals(JsonParser.parseString(expected), JsonParser.parseString(actual));
+			assertAssetIndexEquals(assetIndex, Constants.GSON.fromJson(actual, CurrentAssetIndexJson.class));
+			assertAssetIndexEquals(assetIndex, LEGACY_GSON.fromJson(actual, CurrentAssetIndexJson.class));
+		}
+	}
+	
+	@Test
+	void readJavaVersion() {
+		final String json = readResource("java_runtime_index.json");
+		
+		final CurrentJavaVersionJson expected = LEGACY_GSON.fromJson(json, CurrentJavaVersionJson.class);
+		final CurrentJavaVersionJson actual = Constants.GSON.fromJson(json, CurrentJavaVersionJson.class);
+		
+		assertJavaVersionEquals(expected, actual);
+	}
+	
+	@Test
+	void writeJavaVersion() {
+		final CurrentJavaVersionJson javaVersion = LEGACY_GSON.fromJson(readResource("java_runtime_index.json"), CurrentJavaVersionJson.class);
+		
+		final String expected = LEGACY_GSON.toJson(javaVersion, CurrentJavaVersionJson.class);
+		final String actual = Constants.GSON.toJson(javaVersion, CurrentJavaVersionJson.class);
+		
+		assertEquals(JsonParser.parseString(expected), JsonParser.parseString(actual));
+		assertJavaVersionEquals(javaVersion, Constants.GSON.fromJson(actual, CurrentJavaVersionJson.class));
+		assertJavaVersionEquals(javaVersion, LEGACY_GSON.fromJson(actual, CurrentJavaVersionJson.class));
+	}
+	
+	@Test
+	void readClient() {
+		final String json = readResource("client.json");
+		
+		final CurrentClientJson expected = LEGACY_GSON.fromJson(json, CurrentClientJson.class);
+		final CurrentClientJson actual = Constants.GSON.fromJson(json, CurrentClientJson.class);
+		
+		assertSameJson(expected, actual, CurrentClientJson.class);
+		
+		// The sample contains every kind of argument and library
+		final ArgumentsJson arguments = actual.getArguments();
+		assertFalse(arguments.getConditionalGameArguments().isEmpty());
+		assertFalse(arguments.getConditionalJvmArguments().isEmpty());
+		assertTrue(arguments.getConditionalGameArguments().stream().anyMatch(argument -> argument.getValue().getValue().size() > 1));
+		assertTrue(arguments.getConditionalJvmArguments().stream().anyMatch(argument -> argument.getValue().getValue().size() == 1));
+		assertTrue(actual.getLibraries().stream().anyMatch(library -> library.getNatives() != null && library.getDownloads().getClassifiers() != null));
+	}
+	
+	@Test
+	void writeClient() {
+		final CurrentClientJson client = LEGACY_GSON.fromJson(readResource("client.json"), CurrentClientJson.class);
+		
+		final String expected = LEGACY_GSON.toJson(client, CurrentClientJson.class);
+		final String actual = Constants.GSON.toJson(client, CurrentClientJson.class);
+		
+		assertEquals(JsonParser.parseString(expected), JsonParser.parseString(actual));
+		assertSameJson(client, Constants.GSON.fromJson(actual, CurrentClientJson.class), CurrentClientJson.class);
+	}
+	
+	@Test
+	void readJavaVersionManifest() {
+		final String json = readResource("java_version_manifest.json");
+		
+		final JavaVersionManifestJson expected = LEGACY_GSON.fromJson(json, JavaVersionManifestJson.class);
+		final JavaVersionManifestJson actual = Constants.GSON.fromJson(json, JavaVersionManifestJson.class);
+		
+		assertSameJson(expected, actual, JavaVersionManifestJson.class);
+		assertEquals("17.0.8", actual.getWindowsX64().getJavaRuntimeGamma().get(0).getVersion().getName());
+		assertEquals(100, actual.getLinux().getJreLegacy().get(0).getAvailability().getProgress());
+	}
+	
+	@Test
+	void writeJavaVersionManifest() {
+		final JavaVersionManifestJson manifest = LEGACY_GSON.fromJson(readResource("java_version_manifest.json"), JavaVersionManifestJson.class);
+		
+		final String expected = LEGACY_GSON.toJson(manifest, JavaVersionManifestJson.class);
+		final String actual = Constants.GSON.toJson(manifest, JavaVersionManifestJson.class);
+		
+		assertEquals(JsonParser.parseString(expected), JsonParser.parseString(actual));
+		assertSameJson(manifest, Constants.GSON.fromJson(actual, JavaVersionManifestJson.class), JavaVersionManifestJson.class);
+	}
+	
+	static String readResource(String name) {
+		try (final InputStream inputStream = SerializerCompatibilityTest.class.getResourceAsStream("/" + name)) {
+			assertNotNull(inputStream, "Missing test resource " + name);
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (final IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+	
+	/**
+	 * The model classes have no equals method, so both objects are compared as json written by the same serializers
+	 */
+	private static <T> void assertSameJson(T expected, T actual, Class<T> type) {
+		assertEquals(LEGACY_GSON.toJsonTree(expected, type), LEGACY_GSON.toJsonTree(actual, type));
+	}
+	
+	private static void assertAssetIndexEquals(CurrentAssetIndexJson expected, CurrentAssetIndexJson actual) {
+		assertEquals(expected.isMapToResources(), actual.isMapToResources());
+		assertEquals(expected.isVirtual(), actual.isVirtual());
+		
+		final Map<String, AssetJson> expectedAssets = expected.getAssets();
+		final Map<String, AssetJson> actualAssets = actual.getAssets();
+		assertEquals(expectedAssets.size(), actualAssets.size());
+		
+		for (final Entry<String, AssetJson> entry : expectedAssets.entrySet()) {
+			assertTrue(actualAssets.containsKey(entry.getKey()));
+			final AssetJson asset = actualAssets.get(entry.getKey());
+			assertNotNull(asset, entry.getKey());
+			assertEquals(entry.getValue().getHash(), asset.getHash(), entry.getKey());
+			assertEquals(entry.getValue().getSize(), asset.getSize(), entry.getKey());
+		}
+	}
+	
+	private static void assertJavaVersionEquals(CurrentJavaVersionJson expected, CurrentJavaVersionJson actual) {
+		final Map<String, FileJson> expectedFiles = expected.getFiles();
+		final Map<String, FileJson> actualFiles = actual.getFiles();
+		assertEquals(expectedFiles.keySet(), actualFiles.keySet());
+		
+		for (final Entry<String, FileJson> entry : expectedFiles.entrySet()) {
+			final String name = entry.getKey();
+			final FileJson expectedFile = entry.getValue();
+			final FileJson actualFile = actualFiles.get(name);
+			
+			assertEquals(expectedFile.getType(), actualFile.getType(), name);
+			assertEquals(expectedFile.isExecutable(), actualFile.isExecutable(), name);
+			
+			final DownloadsJson expectedDownloads = expectedFile.getDownloads();
+			final DownloadsJson actualDownloads = actualFile.getDownloads();
+			if (expectedDownloads == null) {
+				assertNull(actualDownloads, name);
+			} else {
+				assertNotNull(actualDownloads, name);
+				assertDownloadEquals(expectedDownloads.getLzma(), actualDownloads.getLzma(), name);
+				assertDownloadEquals(expectedDownloads.getRaw(), actualDownloads.getRaw(), name);
+			}
+		}
+		// The sample contains every kind of entry
+		assertTrue(actualFiles.values().stream().anyMatch(file -> "link".equals(file.getType())));
+		assertTrue(actualFiles.values().stream().anyMatch(file -> file.getDownloads() != null && file.getDownloads().getLzma() == null));
+	}
+	
+	private static void assertDownloadEquals(DownloadJson expected, DownloadJson actual, String name) {
+		if (expected == null) {
+			assertNull(actual, name);
+			return;
+		}
+		assertNotNull(actual, name);
+		assertEquals(expected.getSha1(), actual.getSha1(), name);
+		assertEquals(expected.getSize(), actual.getSize(), name);
+		assertEquals(expected.getUrl(), actual.getUrl(), name);
+	}
+	
+}
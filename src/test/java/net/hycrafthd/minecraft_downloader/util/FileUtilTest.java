@@ -0,0 +1,78 @@
+package net.hycrafthd.minecraft_downloader.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonParseException;
+
+import net.hycrafthd.minecraft_downloader.download.NetworkException;
+import net.hycrafthd.minecraft_downloader.mojang_api.CurrentJavaVersionJson;
+
+class FileUtilTest {
+	
+	@Test
+	void parseJson() throws IOException {
+		final byte[] json = readResource("java_runtime_index.json");
+		
+		final CurrentJavaVersionJson javaVersion = FileUtil.parseJson(new ByteArrayInputStream(json), CurrentJavaVersionJson.class);
+		
+		assertNotNull(javaVersion);
+		assertEquals(12, javaVersion.getFiles().size());
+	}
+	
+	@Test
+	void parseJsonStreamFailure() throws IOException {
+		final byte[] json = readResource("java_runtime_index.json");
+		final NetworkException failure = new NetworkException("Connection reset");
+		
+		// The stream breaks in the middle of the document like a reset connection
+		final InputStream inputStream = new FilterInputStream(new ByteArrayInputStream(json, 0, json.length / 2)) {
+			
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				final int read = super.read(buffer, offset, length);
+				if (read < 0) {
+					throw failure;
+				}
+				return read;
+			}
+		};
+		
+		final NetworkException exception = assertThrows(NetworkException.class, () -> FileUtil.parseJson(inputStream, CurrentJavaVersionJson.class));
+		assertSame(failure, exception);
+	}
+	
+	@Test
+	void parseJsonTruncated() throws IOException {
+		final byte[] json = readResource("java_runtime_index.json");
+		final byte[] truncated = Arrays.copyOf(json, json.length / 2);
+		
+		assertThrows(JsonParseException.class, () -> FileUtil.parseJson(new ByteArrayInputStream(truncated), CurrentJavaVersionJson.class));
+	}
+	
+	@Test
+	void parseJsonMalformed() {
+		final byte[] json = "{\"files\": {\"bin\" [}}".getBytes(StandardCharsets.UTF_8);
+		
+		assertThrows(JsonParseException.class, () -> FileUtil.parseJson(new ByteArrayInputStream(json), CurrentJavaVersionJson.class));
+	}
+	
+	private static byte[] readResource(String name) throws IOException {
+		try (final InputStream inputStream = FileUtilTest.class.getResourceAsStream("/" + name)) {
+			assertNotNull(inputStream, "Missing test resource " + name);
+			return inputStream.readAllBytes();
+		}
+	}
+	
+}